@@ -4,17 +4,20 @@
 */
 package com.arnimasdk;
 
-import android.os.AsyncTask;
 import android.system.ErrnoException;
 import android.system.Os;
 
+import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
 import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.bridge.WritableNativeArray;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
 import com.google.gson.Gson;
 
 import org.hyperledger.indy.sdk.IndyException;
@@ -30,37 +33,96 @@ import org.hyperledger.indy.sdk.ledger.LedgerResults;
 import org.hyperledger.indy.sdk.non_secrets.WalletRecord;
 import org.hyperledger.indy.sdk.non_secrets.WalletSearch;
 import org.hyperledger.indy.sdk.pool.Pool;
-import org.hyperledger.indy.sdk.pool.PoolJSONParameters;
 import org.hyperledger.indy.sdk.wallet.Wallet;
+import org.hyperledger.indy.sdk.wallet.WalletItemAlreadyExistsException;
+import org.hyperledger.indy.sdk.wallet.WalletItemNotFoundException;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.FileWriter;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.net.URLConnection;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ArnimaSdk extends ReactContextBaseJavaModule {
 
     private final ReactApplicationContext reactContext;
     public static final int PROTOCOL_VERSION = 2;
-    private final Map<Integer, Wallet> walletMap;
+    private static final String FORWARD_MESSAGE_TYPE = "did:sov:BzCbsNYhMrjHiqZDTUASHg;spec/routing/1.0/forward";
+    private static final int MAX_CONCURRENT_UNPACKS = 8;
+    private static final int MAX_CONCURRENT_SIGNS = 8;
+    private static final int MAX_CONCURRENT_VERIFIES = 8;
+    private static final int MAX_CONCURRENT_LEDGER_LOOKUPS = 8;
+    private static final int WALLET_QUERY_MAX_RECORDS = 100;
+    private static final int CREDENTIAL_SEARCH_PAGE_SIZE = 256;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private final WalletRegistry wallets;
+    private final WalletUnlocker walletUnlocker;
     private Map<Integer, CredentialsSearchForProofReq> credentialSearchMap;
-    private int credentialSearchIterator = 0;
+    private final AtomicInteger credentialSearchIterator = new AtomicInteger();
+    private final PoolManager poolManager;
+    private final LedgerCache ledgerCache;
+    private final WalletSearchRegistry walletSearches;
+    private final TailsStore tailsStore;
+    private final TailsDownloader tailsDownloader;
+    private final RevocationStateCache revocationStates;
+    private final IndyExecutors executors;
+    private final Metrics metrics;
+    private final Tracer tracer;
+    private final WalletExportJobs walletExports;
+    private final InboundMessageIngestor inboundMessages;
+    private final OutboundTransport outboundTransport;
 
     public ArnimaSdk(ReactApplicationContext reactContext) {
+        this(reactContext, new KeystoreWalletKeyProtector());
+    }
+
+    public ArnimaSdk(ReactApplicationContext reactContext, WalletKeyProtector walletKeyProtector) {
         super(reactContext);
         this.reactContext = reactContext;
-        this.walletMap = new ConcurrentHashMap<>();
         this.credentialSearchMap = new ConcurrentHashMap<>();
+        this.metrics = new Metrics(this::emitMetrics);
+        this.tracer = new Tracer();
+        this.walletExports = new WalletExportJobs(this::emitWalletExportProgress);
+        this.poolManager = new PoolManager(new GenesisStore(new File(reactContext.getExternalFilesDir(null), "genesis")), metrics,
+                tracer);
+        this.outboundTransport = new OutboundTransport(metrics, tracer);
+        this.walletSearches = new WalletSearchRegistry();
+        this.inboundMessages = new InboundMessageIngestor();
+        this.walletUnlocker = new WalletUnlocker(new File(reactContext.getFilesDir(), "wallet-keys"), walletKeyProtector);
+        this.wallets = new WalletRegistry(walletUnlocker, new WalletRegistry.Listener() {
+            @Override
+            public void onOpened(String walletId, Wallet wallet) {
+                IndyExecutors.supply(executors.wallet(), () -> {
+                    refreshReferencedTails(walletId);
+                    return null;
+                });
+            }
+
+            @Override
+            public void onClosing(String walletId, Wallet wallet) {
+                walletSearches.closeAll(wallet);
+                inboundMessages.forget(walletId);
+            }
+        });
+        this.ledgerCache = new LedgerCache(new File(reactContext.getExternalFilesDir(null), "ledger-cache"));
+        this.executors = new IndyExecutors();
+        this.revocationStates = new RevocationStateCache(metrics, tracer);
+        this.tailsStore = new TailsStore(new File(reactContext.getExternalFilesDir(null), "revoc"), revocationStates::forgetReader);
+        this.tailsDownloader = new TailsDownloader(tailsStore, this::emitTailsDownloadProgress, metrics, tracer);
         try {
             Os.setenv("EXTERNAL_STORAGE", reactContext.getExternalFilesDir(null).getAbsolutePath(), true);
             System.loadLibrary("indy");
@@ -74,527 +136,992 @@ public class ArnimaSdk extends ReactContextBaseJavaModule {
         return "ArnimaSdk";
     }
 
-    @ReactMethod
-    public void createPoolLedgerConfig(String poolName, String poolConfig, Promise promise) {
+    @Override
+    public void onCatalystInstanceDestroy() {
+        poolManager.shutdown();
+        walletSearches.shutdown();
         try {
-            Pool.setProtocolVersion(PROTOCOL_VERSION).get();
+            wallets.shutdown();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        walletExports.shutdown();
+        tailsStore.flush();
+        outboundTransport.shutdown();
+        metrics.shutdown();
+        executors.shutdown();
+    }
 
-            File file = new File(reactContext.getExternalFilesDir(null) + "/" + File.separator + "tempPool.txn");
+    private void emitTailsDownloadProgress(String tailsHash, long bytesDownloaded, long totalBytes) {
+        WritableMap progress = Arguments.createMap();
+        progress.putString("tailsHash", tailsHash);
+        progress.putDouble("bytesDownloaded", bytesDownloaded);
+        progress.putDouble("totalBytes", totalBytes);
+        reactContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit("tailsDownloadProgress", progress);
+    }
 
-            file.createNewFile();
+    private void emitWalletExportProgress(JSONObject event) {
+        reactContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit("walletExportProgress", event.toString());
+    }
 
-            FileWriter fw = new FileWriter(file);
-            fw.write(poolConfig);
-            fw.close();
+    private void emitInboundMessage(String id, String unpacked, Exception error) {
+        WritableMap event = Arguments.createMap();
+        event.putString("id", id);
+        if (error != null) {
+            event.putString("error", new IndySdkRejectResponse(error).toJson());
+        } else {
+            event.putString("message", unpacked);
+        }
+        reactContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit("inboundMessage", event);
+    }
 
-            PoolJSONParameters.CreatePoolLedgerConfigJSONParameter createPoolLedgerConfigJSONParameter = new PoolJSONParameters.CreatePoolLedgerConfigJSONParameter(
-                    file.getAbsolutePath());
+    private void emitPoolWarmUp(String poolName, Throwable error) {
+        WritableMap event = Arguments.createMap();
+        event.putString("poolName", poolName);
+        event.putBoolean("ready", error == null);
+        if (error != null) {
+            event.putString("error", new IndySdkRejectResponse(error).toJson());
+        }
+        reactContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit("poolWarmUp", event);
+    }
 
-            Pool.createPoolLedgerConfig(poolName, createPoolLedgerConfigJSONParameter.toJson()).get();
+    private void emitMetrics(JSONObject snapshot) {
+        reactContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit("metrics", snapshot.toString());
+    }
 
-            promise.resolve(null);
-        } catch (Exception e) {
-            IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
-            promise.reject(rejectResponse.getCode(), rejectResponse.getMessage(), e);
-        }
+    private <T> void run(String method, Executor executor, Promise promise, IndyExecutors.Task<T> task) {
+        long started = metrics.start();
+        Tracer.Span span = tracer.begin(method);
+        CompletableFuture<T> future = IndyExecutors.supply(executor, () -> wallets.leased(task));
+        span.leave();
+        future.whenComplete((result, error) -> {
+            span.end(error);
+            if (error != null) {
+                IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(error);
+                metrics.record(method, started, rejectResponse.getCode());
+                promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), error);
+            } else {
+                metrics.record(method, started, null);
+                promise.resolve(result);
+            }
+        });
     }
 
+    /**
+     * Creates the pool config from the genesis transactions in {@code poolConfig}. The genesis
+     * is stored under its content hash and an existing config with the same genesis is reused,
+     * so calling this on every start is cheap.
+     */
     @ReactMethod
-    public void deletePool(String poolConfigName, Promise promise) {
-        try {
-            Pool.deletePoolLedgerConfig(poolConfigName);
-            promise.resolve(null);
-        } catch (Exception e) {
-            IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
-            promise.reject(rejectResponse.getCode(), rejectResponse.getMessage(), e);
-        }
+    public void createPoolLedgerConfig(String poolName, String poolConfig, Promise promise) {
+        long started = metrics.start();
+        IndyExecutors.supply(executors.ledger(), () -> poolManager.createConfig(poolName, poolConfig)).whenComplete((created, error) -> {
+            if (error != null) {
+                IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(error);
+                metrics.record("createPoolLedgerConfig", started, rejectResponse.getCode());
+                promise.reject(rejectResponse.getCode(), rejectResponse.getMessage(), error);
+            } else {
+                metrics.record("createPoolLedgerConfig", started, null);
+                promise.resolve(null);
+            }
+        });
     }
 
     @ReactMethod
-    public void createWallet(String walletConfig, String walletCredentials, Promise promise) {
-        new CreateWallet().execute(walletConfig, walletCredentials, promise);
+    public void deletePool(String poolConfigName, Promise promise) {
+        long started = metrics.start();
+        IndyExecutors.supply(executors.ledger(), () -> {
+            poolManager.deleteConfig(poolConfigName);
+            return null;
+        }).whenComplete((result, error) -> {
+            if (error != null) {
+                IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(error);
+                metrics.record("deletePool", started, rejectResponse.getCode());
+                promise.reject(rejectResponse.getCode(), rejectResponse.getMessage(), error);
+            } else {
+                metrics.record("deletePool", started, null);
+                promise.resolve(null);
+            }
+        });
     }
 
-    private class CreateWallet extends AsyncTask {
-        Promise promise = null;
+    /**
+     * Opens or refreshes the pool in the background and resolves straight away. The outcome
+     * arrives as a "poolWarmUp" event and also surfaces through waitForPoolReady; the warm-up
+     * itself is recorded as the "stage.poolWarmUp" metric and span.
+     */
+    @ReactMethod
+    public void warmUpPool(String poolName, Promise promise) {
+        poolManager.warmUp(poolName, executors.ledger()).whenComplete((result, error) -> emitPoolWarmUp(poolName, error));
+        promise.resolve(null);
+    }
 
-        @Override
-        protected Object doInBackground(Object[] objects) {
-            try {
-                promise = (Promise) objects[2];
-                Wallet.createWallet(objects[0].toString(), objects[1].toString()).get();
-                promise.resolve(null);
-            } catch (Exception e) {
-                IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
-                promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
+    /**
+     * Resolves true once the pool is open and caught up, starting a warm-up when none is
+     * running, or false when {@code timeoutMs} passes first (0 waits as long as it takes).
+     */
+    @ReactMethod
+    public void waitForPoolReady(String poolName, int timeoutMs, Promise promise) {
+        poolManager.awaitReady(poolName, executors.ledger(), timeoutMs).whenComplete((ready, error) -> {
+            if (error != null) {
+                IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(error);
+                promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), error);
+            } else {
+                promise.resolve(ready);
             }
-            return promise;
-        }
+        });
+    }
 
-        @Override
-        protected void onPreExecute() {
-            super.onPreExecute();
-        }
+    @ReactMethod
+    public void createWallet(String walletConfig, String walletCredentials, Promise promise) {
+        run("createWallet", executors.wallet(), promise, () -> {
+            Wallet.createWallet(walletConfig, walletCredentials).get();
+            return null;
+        });
     }
 
     @ReactMethod
     public void deleteWallet(String walletConfig, String walletCredentials,
                                    Promise promise) {
-        try {
-            Wallet.deleteWallet(walletConfig, walletCredentials);
-            promise.resolve(null);
-        } catch (Exception e) {
-            IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
-            promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
-        }
+        run("deleteWallet", executors.wallet(), promise, () -> {
+            String walletId = WalletRegistry.walletId(walletConfig);
+            wallets.close(walletId);
+            walletUnlocker.delete(walletConfig, walletCredentials);
+            return null;
+        });
     }
 
     @ReactMethod
     public void closeWallet(Promise promise) {
-        Wallet wallet = null;
-        try {
-            wallet = walletMap.get(1);
-            wallet.closeWallet();
-            walletMap.remove(wallet);
-
-            for (Map.Entry<Integer, Wallet> entry: walletMap.entrySet()) {
-                if (entry.getValue().equals(wallet)) {
-                    walletMap.remove(entry.getKey());
-                    break;
-                }
-            }
+        run("closeWallet", executors.wallet(), promise, () -> {
+            wallets.closeAll();
+            return null;
+        });
+    }
 
-            promise.resolve(null);
-        } catch (Exception e) {
-            IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
-            promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
-        }
+    @ReactMethod
+    public void closeWalletById(String walletId, Promise promise) {
+        run("closeWalletById", executors.wallet(), promise, () -> {
+            wallets.close(walletId);
+            return null;
+        });
+    }
+
+    /**
+     * Sets how many wallets may stay open at once; the least recently used ones are closed.
+     */
+    @ReactMethod
+    public void setMaxOpenWallets(int maxOpenWallets, Promise promise) {
+        run("setMaxOpenWallets", executors.wallet(), promise, () -> {
+            wallets.setMaxOpenWallets(maxOpenWallets);
+            return null;
+        });
     }
 
 
     @ReactMethod
     public void openInitWallet(String walletConfig, String walletCredentials, Promise promise) {
-        Wallet wallet = null;
-        try {
-            if (walletMap.size() == 0) {
-                wallet = Wallet.openWallet(walletConfig, walletCredentials).get();
-                walletMap.put(1, wallet);
+        run("openInitWallet", executors.wallet(), promise, () -> {
+            getWallet(walletConfig, walletCredentials);
+            return true;
+        });
+    }
+
+    @ReactMethod
+    public void openWallet(String walletConfig, String walletCredentials, Promise promise) {
+        run("openWallet", executors.wallet(), promise, () -> {
+            getWallet(walletConfig, walletCredentials);
+            return true;
+        });
+    }
+
+    /**
+     * Rekeys the wallet to a random raw key that is cached under the wallet key protector, so
+     * later opens skip the passphrase key derivation. A recovery copy opened by the passphrase
+     * is kept too. Resolves once the wallet is open with the new key.
+     */
+    @ReactMethod
+    public void enableFastUnlock(String walletConfig, String walletCredentials, Promise promise) {
+        run("enableFastUnlock", executors.wallet(), promise, () -> {
+            String walletId = WalletRegistry.walletId(walletConfig);
+            if (!walletUnlocker.isEnabled(walletId)) {
+                wallets.reopen(walletConfig, walletCredentials, walletUnlocker::enable);
             } else {
-                wallet = walletMap.get(1);
+                wallets.get(walletConfig, walletCredentials, walletUnlocker::enable);
             }
-            promise.resolve(true);
-        } catch (Exception e) {
-            IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
-            promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
-        }
+            return true;
+        });
     }
 
     @ReactMethod
-    public Wallet openWallet(String walletConfig, String walletCredentials, Promise promise) {
-        Wallet wallet = null;
-        try {
-            if (walletMap.size() == 0) {
-                wallet = Wallet.openWallet(walletConfig, walletCredentials).get();
-                walletMap.put(1, wallet);
+    public void disableFastUnlock(String walletConfig, String walletCredentials, Promise promise) {
+        run("disableFastUnlock", executors.wallet(), promise, () -> {
+            String walletId = WalletRegistry.walletId(walletConfig);
+            if (walletUnlocker.isEnabled(walletId)) {
+                wallets.reopen(walletConfig, walletCredentials, walletUnlocker::disable);
             } else {
-                wallet = walletMap.get(1);
+                wallets.get(walletConfig, walletCredentials, walletUnlocker::disable);
+            }
+            return true;
+        });
+    }
+
+    @ReactMethod
+    public void isFastUnlockEnabled(String walletConfig, Promise promise) {
+        run("isFastUnlockEnabled", executors.wallet(), promise, () -> walletUnlocker.isEnabled(WalletRegistry.walletId(walletConfig)));
+    }
+
+    private Wallet getWallet(String walletConfig, String walletCredentials) throws Exception {
+        return wallets.get(walletConfig, walletCredentials);
+    }
+
+    private void refreshReferencedTails(String walletId) {
+        Wallet wallet = wallets.acquireOpen(walletId);
+        if (wallet == null) {
+            return;
+        }
+        try {
+            tailsStore.beginReferenceScan(walletId);
+            JSONArray credentials = new JSONArray(Anoncreds.proverGetCredentials(wallet, "{}").get());
+            List<String> revRegIds = new ArrayList<>();
+            for (int i = 0; i < credentials.length(); i++) {
+                JSONObject credential = credentials.getJSONObject(i);
+                if (!credential.isNull("rev_reg_id")) {
+                    revRegIds.add(credential.getString("rev_reg_id"));
+                }
             }
+            tailsStore.setReferencedRevRegIds(walletId, revRegIds);
         } catch (Exception e) {
-            IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
-            promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
+            e.printStackTrace();
         } finally {
-            return wallet;
+            try {
+                wallets.release(wallet);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
         }
     }
 
     public Pool openPoolLedger(String poolName, String poolConfig, Promise promise) {
-        Pool pool = null;
         try {
-            pool = Pool.openPoolLedger(poolName, "{}").get();
-            return pool;
+            return poolManager.acquire(poolName);
         } catch (Exception e) {
             IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
             promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
             return null;
         }
     }
-    public void closePoolLedger(Pool pool) {
+
+    public void closePoolLedger(String poolName) {
+        poolManager.release(poolName);
+    }
+
+    private String submitRequest(String poolName, Pool pool, String request) throws Exception {
+        long started = metrics.start();
+        Tracer.Span span = tracer.begin("ledger.submitRequest").put("poolName", poolName);
         try {
-            pool.closePoolLedger().get();
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+            String response = Ledger.submitRequest(pool, request).get();
+            metrics.record("stage.submitRequest", started, null);
+            metrics.addBytes("stage.submitRequest", request.length() + response.length());
+            span.end();
+            return response;
         } catch (ExecutionException e) {
-            e.printStackTrace();
-        } catch (IndyException e) {
-            e.printStackTrace();
+            metrics.record("stage.submitRequest", started, Metrics.errorCode(e));
+            span.end(e);
+            poolManager.onRequestFailed(poolName, e);
+            throw e;
         }
     }
 
+    @ReactMethod
+    public void closePool(String poolName, Promise promise) {
+        run("closePool", executors.ledger(), promise, () -> {
+            poolManager.close(poolName);
+            return null;
+        });
+    }
+
     @ReactMethod
     public void createAndStoreMyDid(String walletConfig, String walletCredentials, String didJson,
                                      Boolean createMasterSecret, Promise promise) {
-        Wallet wallet = null;
-        try {
-            wallet = openWallet(walletConfig, walletCredentials, promise);
-            if (wallet != null) {
-                DidResults.CreateAndStoreMyDidResult createMyDidResult = Did
-                        .createAndStoreMyDid(wallet, didJson).get();
-                String myDid = createMyDidResult.getDid();
-                String myVerkey = createMyDidResult.getVerkey();
-                WritableArray response = new WritableNativeArray();
-                JSONObject config = new JSONObject(walletConfig);
-                response.pushString(myDid);
-                response.pushString(myVerkey);
-                if ((Boolean) createMasterSecret) {
-                    String outputMasterSecretId = Anoncreds
-                            .proverCreateMasterSecret(wallet, config.get("id").toString()).get();
-                    response.pushString(outputMasterSecretId);
-                }
-                promise.resolve(response);
+        run("createAndStoreMyDid", executors.wallet(), promise, () -> {
+            Wallet wallet = getWallet(walletConfig, walletCredentials);
+            DidResults.CreateAndStoreMyDidResult createMyDidResult = Did
+                    .createAndStoreMyDid(wallet, didJson).get();
+            String myDid = createMyDidResult.getDid();
+            String myVerkey = createMyDidResult.getVerkey();
+            WritableArray response = new WritableNativeArray();
+            JSONObject config = new JSONObject(walletConfig);
+            response.pushString(myDid);
+            response.pushString(myVerkey);
+            if ((Boolean) createMasterSecret) {
+                String outputMasterSecretId = Anoncreds
+                        .proverCreateMasterSecret(wallet, config.get("id").toString()).get();
+                response.pushString(outputMasterSecretId);
             }
-        } catch (Exception e) {
-            IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
-            promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
-        }
+            return response;
+        });
     }
 
     @ReactMethod
     public void addWalletRecord(String walletConfig, String walletCredentials, String recordType, String id, String value, String tags,
                                 Promise promise) {
-        Wallet wallet = null;
-        try {
-            wallet = openWallet(walletConfig, walletCredentials, promise);
-            if (wallet != null) {
-                WalletRecord.add(wallet, recordType, id, value, tags).get();
-                promise.resolve("true");
-            }
-        } catch (Exception e) {
-            IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
-            promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
-        }
+        run("addWalletRecord", executors.wallet(), promise, () -> {
+            Wallet wallet = getWallet(walletConfig, walletCredentials);
+            WalletRecord.add(wallet, recordType, id, value, tags).get();
+            return "true";
+        });
     }
 
     @ReactMethod
     public void updateWalletRecord(String walletConfig, String walletCredentials, String recordType, String id, String value, String tags,
                                    Promise promise) {
-        Wallet wallet = null;
-        try {
-            wallet = openWallet(walletConfig, walletCredentials, promise);
-            if (wallet != null) {
-                WalletRecord.updateValue(wallet, recordType, id, value)
-                        .get();
+        run("updateWalletRecord", executors.wallet(), promise, () -> {
+            Wallet wallet = getWallet(walletConfig, walletCredentials);
+            WalletRecord.updateValue(wallet, recordType, id, value)
+                    .get();
 
-                if (!tags.equalsIgnoreCase("{}")) {
-                    WalletRecord.updateTags(wallet, recordType, id,tags);
-                }
-                promise.resolve("true");
+            if (!tags.equalsIgnoreCase("{}")) {
+                WalletRecord.updateTags(wallet, recordType, id,tags);
             }
-        } catch (Exception e) {
-            IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
-            promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
-        }
+            return "true";
+        });
     }
 
     @ReactMethod
     public void deleteWalletRecord(String walletConfig, String walletCredentials, String recordType, String id,
                                    Promise promise) {
-        Wallet wallet = null;
-        try {
-            wallet = openWallet(walletConfig, walletCredentials, promise);
-            if (wallet != null) {
-                WalletRecord.delete(wallet, recordType, id)
-                        .get();
-                promise.resolve("true");
-            }
-        } catch (Exception e) {
-            IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
-            promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
-        }
+        run("deleteWalletRecord", executors.wallet(), promise, () -> {
+            Wallet wallet = getWallet(walletConfig, walletCredentials);
+            WalletRecord.delete(wallet, recordType, id)
+                    .get();
+            return "true";
+        });
     }
 
+    /**
+     * Inserts the record, or replaces its value (and tags, when given) if a record with the same
+     * type and id already exists. Resolves to true when the record was inserted.
+     */
     @ReactMethod
-    public void getWalletRecordFromQuery(String walletConfig, String walletCredentials, String recordType, String query,
-                                         Promise promise) {
-        Wallet wallet = null;
-        try {
-            wallet = openWallet(walletConfig, walletCredentials, promise);
-            if (wallet != null) {
-                WalletSearch search = WalletSearch.open(wallet, recordType, query, "{\"retrieveTags\":true,\"retrieveType \":true, \"retrieveType\": true }")
-                        .get();
-                String recordsJson = WalletSearch.searchFetchNextRecords(wallet, search, 100).get();
-
-                promise.resolve(recordsJson);
+    public void upsertWalletRecord(String walletConfig, String walletCredentials, String recordType, String id, String value,
+                                   String tags, Promise promise) {
+        run("upsertWalletRecord", executors.wallet(), promise, () -> {
+            Wallet wallet = getWallet(walletConfig, walletCredentials);
+            try {
+                WalletRecord.updateValue(wallet, recordType, id, value).get();
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof WalletItemNotFoundException)) {
+                    throw e;
+                }
+                WalletRecord.add(wallet, recordType, id, value, tags).get();
+                return true;
             }
-        } catch (Exception e) {
-            IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
-            promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
-        }
+            if (tags != null && !tags.equalsIgnoreCase("{}")) {
+                WalletRecord.updateTags(wallet, recordType, id, tags).get();
+            }
+            return false;
+        });
     }
 
+    /**
+     * Adds the record unless one with the same type and id exists. Resolves to true when it was inserted.
+     */
     @ReactMethod
-    public void packMessage(String walletConfig, String walletCredentials, ReadableArray message,
-                            ReadableArray receiverKeyArray, String senderVk, Promise promise) {
-        Wallet wallet = null;
-        try {
-            wallet = openWallet(walletConfig, walletCredentials, promise);
-            if (wallet != null) {
-                byte[] buffer = readableArrayToBuffer((ReadableArray) message);
-
-                ReadableArray receiverKeys = (ReadableArray) receiverKeyArray;
-                String[] keys = new String[receiverKeys.size()];
-                for (int i = 0; i < receiverKeys.size(); i++) {
-                    keys[i] = receiverKeys.getString(i);
+    public void addWalletRecordIfAbsent(String walletConfig, String walletCredentials, String recordType, String id, String value,
+                                        String tags, Promise promise) {
+        run("addWalletRecordIfAbsent", executors.wallet(), promise, () -> {
+            Wallet wallet = getWallet(walletConfig, walletCredentials);
+            try {
+                WalletRecord.get(wallet, recordType, id, "{\"retrieveType\":false,\"retrieveValue\":false,\"retrieveTags\":false}").get();
+                return false;
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof WalletItemNotFoundException)) {
+                    throw e;
                 }
-                Gson gson = new Gson();
-                String receiverKeysJson = gson.toJson(keys);
-
-                byte[] jwe = Crypto.packMessage(wallet, receiverKeysJson, senderVk, buffer).get();
-                WritableArray result = new WritableNativeArray();
-                for (byte b : jwe) {
-                    result.pushInt(b);
+            }
+            try {
+                WalletRecord.add(wallet, recordType, id, value, tags).get();
+                return true;
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof WalletItemAlreadyExistsException) {
+                    return false;
                 }
-                promise.resolve(result);
+                throw e;
             }
+        });
+    }
 
-        } catch (Exception e) {
-            IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
-            promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
-        }
+    /**
+     * Batch variants of add/update/deleteWalletRecord. Each takes an array of
+     * {type, id, value, tags} maps, applies them back to back on the open wallet and resolves
+     * to one {id, success, error?} map per operation, in input order.
+     */
+    @ReactMethod
+    public void addWalletRecords(String walletConfig, String walletCredentials, ReadableArray records, Promise promise) {
+        runRecordBatch("addWalletRecords", walletConfig, walletCredentials, records, promise, (wallet, record) ->
+                WalletRecord.add(wallet, record.type, record.id, record.value, record.tags).get());
     }
 
     @ReactMethod
-    public void unpackMessage(String walletConfig, String walletCredentials, ReadableArray jwe, Promise promise) {
-        Wallet wallet = null;
-        try {
-            wallet = openWallet(walletConfig, walletCredentials, promise);
-            if (wallet != null) {
-                byte[] buffer = readableArrayToBuffer(jwe);
-                byte[] res = Crypto.unpackMessage(wallet, buffer).get();
-
-                WritableArray result = new WritableNativeArray();
-                for (byte b : res) {
-                    result.pushInt(b);
-                }
-                promise.resolve(result);
+    public void updateWalletRecords(String walletConfig, String walletCredentials, ReadableArray records, Promise promise) {
+        runRecordBatch("updateWalletRecords", walletConfig, walletCredentials, records, promise, (wallet, record) -> {
+            WalletRecord.updateValue(wallet, record.type, record.id, record.value).get();
+            if (record.tags != null && !record.tags.equalsIgnoreCase("{}")) {
+                WalletRecord.updateTags(wallet, record.type, record.id, record.tags).get();
             }
-        } catch (Exception e) {
-            IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
-            promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
-        }
+        });
     }
 
     @ReactMethod
-    public void cryptoSign(String walletConfig, String walletCredentials, String signerVk, ReadableArray messageRaw,
-                           Promise promise) {
-        Wallet wallet = null;
-        try {
-            wallet = openWallet(walletConfig, walletCredentials, promise);
-            if (wallet != null) {
-                byte[] messageBuf = readableArrayToBuffer(messageRaw);
-                byte[] signature = Crypto.cryptoSign(wallet, signerVk, messageBuf).get();
-                WritableArray result = new WritableNativeArray();
-                for (byte b : signature) {
-                    result.pushInt(b);
+    public void deleteWalletRecords(String walletConfig, String walletCredentials, ReadableArray records, Promise promise) {
+        runRecordBatch("deleteWalletRecords", walletConfig, walletCredentials, records, promise, (wallet, record) ->
+                WalletRecord.delete(wallet, record.type, record.id).get());
+    }
+
+    private void runRecordBatch(String method, String walletConfig, String walletCredentials, ReadableArray recordArray,
+                                Promise promise, RecordOperation operation) {
+        List<RecordInput> records = new ArrayList<>(recordArray.size());
+        for (int i = 0; i < recordArray.size(); i++) {
+            records.add(new RecordInput(recordArray.getMap(i)));
+        }
+        run(method, executors.wallet(), promise, () -> {
+            Wallet wallet = getWallet(walletConfig, walletCredentials);
+            WritableArray response = new WritableNativeArray();
+            for (RecordInput record : records) {
+                WritableMap item = Arguments.createMap();
+                item.putString("id", record.id);
+                try {
+                    operation.apply(wallet, record);
+                    item.putBoolean("success", true);
+                } catch (Exception e) {
+                    item.putBoolean("success", false);
+                    item.putString("error", new IndySdkRejectResponse(e).toJson());
                 }
-                promise.resolve(result);
+                response.pushMap(item);
             }
-        } catch (Exception e) {
-            IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
-            promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
-        }
+            return response;
+        });
     }
 
-    @ReactMethod
-    public void cryptoVerify(String walletConfig, String walletCredentials, String signerVk, ReadableArray messageRaw,
-                             ReadableArray signatureRaw, Promise promise) {
-        Wallet wallet = null;
-        try {
-            wallet = openWallet(walletConfig, walletCredentials, promise);
-            if (wallet != null) {
-                byte[] messageBuf = readableArrayToBuffer(messageRaw);
-                byte[] sigBuf = readableArrayToBuffer(signatureRaw);
-                boolean valid = Crypto.cryptoVerify(signerVk, messageBuf, sigBuf).get();
-                promise.resolve(valid);
-            }
-        } catch (Exception e) {
-            IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
-            promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
-        }
+    private interface RecordOperation {
+        void apply(Wallet wallet, RecordInput record) throws Exception;
     }
 
-    @ReactMethod
-    public void proverCreateCredentialReq(String walletConfig, String walletCredentials, String proverDid,
-                                          String credentialOfferJson, String credentialDefJson, String masterSecret, Promise promise) {
-        Wallet wallet = null;
-        try {
-            wallet = openWallet(walletConfig, walletCredentials, promise);
-            if (wallet != null) {
-                AnoncredsResults.ProverCreateCredentialRequestResult credentialRequestResult = Anoncreds
-                        .proverCreateCredentialReq(wallet, proverDid, credentialOfferJson,
-                                credentialDefJson, masterSecret)
-                        .get();
-                WritableArray response = new WritableNativeArray();
-                response.pushString(credentialRequestResult.getCredentialRequestJson());
-                response.pushString(credentialRequestResult.getCredentialRequestMetadataJson());
-                promise.resolve(response);
-            }
-        } catch (Exception e) {
-            IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
-            promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
+    private static class RecordInput {
+        final String type;
+        final String id;
+        final String value;
+        final String tags;
+
+        RecordInput(ReadableMap map) {
+            this.type = map.getString("type");
+            this.id = map.getString("id");
+            this.value = map.hasKey("value") && !map.isNull("value") ? map.getString("value") : null;
+            this.tags = map.hasKey("tags") && !map.isNull("tags") ? map.getString("tags") : null;
         }
     }
 
+    /**
+     * Returns at most the first 100 matching records, as it always has; use
+     * {@link #openWalletSearch} to page through larger results.
+     */
     @ReactMethod
-    public void proverStoreCredential(String walletConfig, String walletCredentials, String credId,
-                                      String credReqMetadataJson, String credJson, String credDefJson, String revRegDefJson, Promise promise) {
-        Wallet wallet = null;
-        try {
-            wallet = openWallet(walletConfig, walletCredentials, promise);
-            if (wallet != null) {
-                String  newCredId = Anoncreds.proverStoreCredential(wallet, credId, credReqMetadataJson,
-                            credJson, credDefJson, revRegDefJson).get();
-                promise.resolve(newCredId);
+    public void getWalletRecordFromQuery(String walletConfig, String walletCredentials, String recordType, String query,
+                                         Promise promise) {
+        run("getWalletRecordFromQuery", executors.wallet(), promise, () -> {
+            Wallet wallet = getWallet(walletConfig, walletCredentials);
+            WalletSearch search = WalletSearch.open(wallet, recordType, query, "{\"retrieveTags\":true,\"retrieveType \":true, \"retrieveType\": true }")
+                    .get();
+            try {
+                return WalletSearch.searchFetchNextRecords(wallet, search, WALLET_QUERY_MAX_RECORDS).get();
+            } finally {
+                WalletSearch.closeSearch(search).get();
             }
-        } catch (Exception e) {
-            IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
-            promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
-        }
+        });
     }
 
+    /**
+     * Opens a wallet search and returns a handle for {@link #fetchNextWalletRecords}. The handle
+     * must be released with {@link #closeWalletSearch}; handles left idle are closed after a timeout.
+     */
     @ReactMethod
-    public void getRevocRegDefJson(String poolName, String poolConfig, String submitterDid, String revRegDefId, Promise promise) {
-        Pool pool = null;
-        try {
-            pool = openPoolLedger(poolName, poolConfig, promise);
-            String revocRegDefJsonRequest = Ledger.buildGetRevocRegDefRequest(submitterDid, revRegDefId).get();
-            String revocRegDefJsonResponse = Ledger.submitRequest(pool, revocRegDefJsonRequest).get();
-            LedgerResults.ParseResponseResult responseResult = Ledger.parseGetRevocRegDefResponse(revocRegDefJsonResponse).get();
-            promise.resolve(responseResult.getObjectJson());
-        } catch (Exception e) {
-            IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
-            promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
-        } finally {
-            if (pool != null) {
-                closePoolLedger(pool);
-            }
-        }
+    public void openWalletSearch(String walletConfig, String walletCredentials, String recordType, String query,
+                                 boolean retrieveTotalCount, Promise promise) {
+        run("openWalletSearch", executors.wallet(), promise, () -> {
+            Wallet wallet = getWallet(walletConfig, walletCredentials);
+            String options = new JSONObject()
+                    .put("retrieveRecords", true)
+                    .put("retrieveTotalCount", retrieveTotalCount)
+                    .put("retrieveType", true)
+                    .put("retrieveValue", true)
+                    .put("retrieveTags", true)
+                    .toString();
+            WalletSearch search = WalletSearch.open(wallet, recordType, query, options).get();
+            return walletSearches.register(WalletRegistry.walletId(walletConfig), wallet, search);
+        });
     }
 
+    /**
+     * Fetches the next page of a search. The wallet is leased only for the fetch; once it has
+     * been closed the search is closed with it and this rejects with
+     * {@link WalletSearchRegistry#CLOSED_CODE}.
+     */
     @ReactMethod
-    public void getRevocRegsJson(String poolName, String poolConfig, String submitterDid, String revRegDefId, String timestamp, Promise promise) {
-        Pool pool = null;
-        try {
-            pool = openPoolLedger(poolName, poolConfig, promise);
-            String revocRegsJsonRequest = Ledger.buildGetRevocRegRequest(submitterDid, revRegDefId, Long.parseLong(timestamp)).get();
-            String revocRegsJsonResponse = Ledger.submitRequest(pool, revocRegsJsonRequest).get();
-            LedgerResults.ParseRegistryResponseResult responseResult = Ledger.parseGetRevocRegResponse(revocRegsJsonResponse).get();
-            promise.resolve(responseResult.getObjectJson());
-        } catch (Exception e) {
-            IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
-            promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
-        } finally {
-            if (pool != null) {
-                closePoolLedger(pool);
+    public void fetchNextWalletRecords(int searchHandle, int count, Promise promise) {
+        run("fetchNextWalletRecords", executors.wallet(), promise, () -> {
+            WalletSearchRegistry.SearchEntry entry = walletSearches.get(searchHandle);
+            Wallet wallet = wallets.acquireOpen(entry.walletId);
+            try {
+                if (wallet != entry.wallet) {
+                    walletSearches.close(searchHandle);
+                    throw new WalletSearchRegistry.ClosedException("The wallet of search " + searchHandle + " was closed");
+                }
+                synchronized (entry) {
+                    if (entry.closed) {
+                        throw new WalletSearchRegistry.ClosedException("Wallet search " + searchHandle + " is closed or has expired");
+                    }
+                    return WalletSearch.searchFetchNextRecords(entry.wallet, entry.search, count).get();
+                }
+            } finally {
+                if (wallet != null) {
+                    wallets.release(wallet);
+                }
             }
-        }
+        });
     }
 
     @ReactMethod
-    public void verifierVerifyProof(String proofRequest, String proof,
-                                    String schemas, String credentialDefs, String revRegDefs, String revRegsObj, Promise promise) {
-        try {
-            Boolean verification = Anoncreds.verifierVerifyProof(proofRequest, proof, schemas, credentialDefs, revRegDefs, revRegsObj).get();
-            promise.resolve(verification);
-        } catch (Exception e) {
-            IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
-            promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
-        }
+    public void closeWalletSearch(int searchHandle, Promise promise) {
+        run("closeWalletSearch", executors.wallet(), promise, () -> {
+            walletSearches.close(searchHandle);
+            return null;
+        });
     }
 
     @ReactMethod
-    public void proverGetCredentials(String walletConfig, String walletCredentials, String filter, Promise promise) {
-        Wallet wallet = null;
-        try {
-            wallet = openWallet(walletConfig, walletCredentials, promise);
-            if (wallet != null) {
-                String credentials = Anoncreds.proverGetCredentials(wallet, filter).get();
-                promise.resolve(credentials);
-            }
-        } catch (Exception e) {
-            IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
-            promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
-        }
+    public void packMessage(String walletConfig, String walletCredentials, ReadableArray message,
+                            ReadableArray receiverKeyArray, String senderVk, Promise promise) {
+        byte[] buffer = readableArrayToBuffer(message);
+        String[] keys = readableArrayToStrings(receiverKeyArray);
+        run("packMessage", executors.wallet(), promise, () -> {
+            Wallet wallet = getWallet(walletConfig, walletCredentials);
+            Gson gson = new Gson();
+            String receiverKeysJson = gson.toJson(keys);
+
+            byte[] jwe = Crypto.packMessage(wallet, receiverKeysJson, senderVk, buffer).get();
+            return bufferToWritableArray(jwe);
+        });
     }
 
     @ReactMethod
-    public void proverGetCredential(String walletConfig, String walletCredentials, String credId, Promise promise) {
-        Wallet wallet = null;
-        try {
-            wallet = openWallet(walletConfig, walletCredentials, promise);
-            if (wallet != null) {
-                String credential = Anoncreds.proverGetCredential(wallet, credId).get();
-                promise.resolve(credential);
+    public void unpackMessage(String walletConfig, String walletCredentials, ReadableArray jwe, Promise promise) {
+        byte[] buffer = readableArrayToBuffer(jwe);
+        run("unpackMessage", executors.wallet(), promise, () -> {
+            Wallet wallet = getWallet(walletConfig, walletCredentials);
+            byte[] res = Crypto.unpackMessage(wallet, buffer).get();
+            return bufferToWritableArray(res);
+        });
+    }
+
+    @ReactMethod
+    public void cryptoSign(String walletConfig, String walletCredentials, String signerVk, ReadableArray messageRaw,
+                           Promise promise) {
+        byte[] messageBuf = readableArrayToBuffer(messageRaw);
+        run("cryptoSign", executors.wallet(), promise, () -> {
+            Wallet wallet = getWallet(walletConfig, walletCredentials);
+            byte[] signature = Crypto.cryptoSign(wallet, signerVk, messageBuf).get();
+            return bufferToWritableArray(signature);
+        });
+    }
+
+    @ReactMethod
+    public void cryptoVerify(String walletConfig, String walletCredentials, String signerVk, ReadableArray messageRaw,
+                             ReadableArray signatureRaw, Promise promise) {
+        byte[] messageBuf = readableArrayToBuffer(messageRaw);
+        byte[] sigBuf = readableArrayToBuffer(signatureRaw);
+        run("cryptoVerify", executors.anoncreds(), promise, () -> Crypto.cryptoVerify(signerVk, messageBuf, sigBuf).get());
+    }
+
+    @ReactMethod
+    public void packMessageEncoded(String walletConfig, String walletCredentials, String message, String encoding,
+                                   ReadableArray receiverKeyArray, String senderVk, Promise promise) {
+        String[] keys = readableArrayToStrings(receiverKeyArray);
+        run("packMessageEncoded", executors.wallet(), promise, () -> {
+            Wallet wallet = getWallet(walletConfig, walletCredentials);
+            String receiverKeysJson = new Gson().toJson(keys);
+            byte[] jwe = Crypto.packMessage(wallet, receiverKeysJson, senderVk, BridgeEncoding.decode(message, encoding)).get();
+            return BridgeEncoding.encode(jwe, encoding);
+        });
+    }
+
+    @ReactMethod
+    public void packMessageWithRouting(String walletConfig, String walletCredentials, String payload,
+                                       ReadableArray recipientKeyArray, ReadableArray routingKeyArray, String senderVk,
+                                       Promise promise) {
+        String[] recipientKeys = readableArrayToStrings(recipientKeyArray);
+        String[] routingKeys = routingKeyArray == null ? new String[0] : readableArrayToStrings(routingKeyArray);
+        run("packMessageWithRouting", executors.wallet(), promise, () -> {
+            Wallet wallet = getWallet(walletConfig, walletCredentials);
+            byte[] message = packWithRouting(wallet, payload, recipientKeys, routingKeys, senderVk);
+            return BridgeEncoding.encode(message, BridgeEncoding.UTF8);
+        });
+    }
+
+    /**
+     * Packs {@code payload} like packMessageWithRouting and posts it to {@code endpoint} through
+     * the native outbound transport, so the packed message never crosses the bridge. Resolves
+     * to {status, body} of the agent's response whatever its status, as the fetch path did;
+     * only a connection failure left after retries rejects.
+     */
+    @ReactMethod
+    public void packAndSend(String walletConfig, String walletCredentials, String endpoint, ReadableArray recipientKeyArray,
+                            ReadableArray routingKeyArray, String senderVk, String payload, Promise promise) {
+        String[] recipientKeys = readableArrayToStrings(recipientKeyArray);
+        String[] routingKeys = routingKeyArray == null ? new String[0] : readableArrayToStrings(routingKeyArray);
+        long started = metrics.start();
+        Tracer.Span span = tracer.begin("packAndSend");
+        CompletableFuture<byte[]> packed = IndyExecutors.supply(executors.wallet(), () -> wallets.leased(() ->
+                packWithRouting(getWallet(walletConfig, walletCredentials), payload, recipientKeys, routingKeys, senderVk)));
+        span.leave();
+        packed.thenCompose(message -> {
+            Tracer.Span previous = Tracer.activate(span);
+            try {
+                return outboundTransport.send(endpoint, message);
+            } finally {
+                Tracer.restore(previous);
+            }
+        }).whenComplete((response, error) -> {
+            span.end(error);
+            if (error != null) {
+                IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(error);
+                metrics.record("packAndSend", started, rejectResponse.getCode());
+                promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), error);
+                return;
+            }
+            try {
+                metrics.record("packAndSend", started, null);
+                promise.resolve(response.toJson().toString());
+            } catch (Exception e) {
+                IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
+                promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
             }
+        });
+    }
+
+    /**
+     * Tunes the outbound transport: {connectTimeoutMs, readTimeoutMs, maxConnectionsPerEndpoint,
+     * maxAttempts, retryBackoffMs}, each optional.
+     */
+    @ReactMethod
+    public void setOutboundTransportConfig(String config, Promise promise) {
+        try {
+            outboundTransport.configure(new JSONObject(config));
+            promise.resolve(null);
         } catch (Exception e) {
             IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
             promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
         }
     }
 
+    private byte[] packWithRouting(Wallet wallet, String payload, String[] recipientKeys, String[] routingKeys, String senderVk)
+            throws Exception {
+        byte[] message = Crypto.packMessage(wallet, new Gson().toJson(recipientKeys), senderVk,
+                BridgeEncoding.decode(payload, BridgeEncoding.UTF8)).get();
+        for (String routingKey : routingKeys) {
+            byte[] forwardMessage = createForwardMessage(recipientKeys[0], message);
+            message = Crypto.packMessage(wallet, new Gson().toJson(new String[]{routingKey}), senderVk, forwardMessage).get();
+        }
+        return message;
+    }
+
     @ReactMethod
-    public void getCredDef(String submitterDid, String id, String poolName, String poolConfig, Promise promise) {
-        Pool pool = null;
-        try {
-            String credDefRequest = Ledger.buildGetCredDefRequest(submitterDid, id).get();
-            pool = openPoolLedger(poolName, poolConfig, promise);
-            if (pool != null) {
-                String credDefResponse = Ledger.submitRequest(pool,  credDefRequest).get();
+    public void unpackMessageEncoded(String walletConfig, String walletCredentials, String jwe, String encoding, Promise promise) {
+        run("unpackMessageEncoded", executors.wallet(), promise, () -> {
+            Wallet wallet = getWallet(walletConfig, walletCredentials);
+            byte[] res = Crypto.unpackMessage(wallet, BridgeEncoding.decode(jwe, encoding)).get();
+            return BridgeEncoding.encode(res, encoding);
+        });
+    }
 
-                LedgerResults.ParseResponseResult responseResult = Ledger.parseGetCredDefResponse(credDefResponse).get();
-                promise.resolve(responseResult.getObjectJson());
+    /**
+     * Unpacks a batch of utf8 JWEs against the open wallet, keeping at most
+     * {@link #MAX_CONCURRENT_UNPACKS} in flight. Resolves to one map per input, in input order,
+     * holding either the unpacked "message" or the rejected "error".
+     */
+    @ReactMethod
+    public void unpackMessages(String walletConfig, String walletCredentials, ReadableArray jweArray, Promise promise) {
+        String[] jwes = readableArrayToStrings(jweArray);
+        run("unpackMessages", executors.wallet(), promise, () -> {
+            Wallet wallet = getWallet(walletConfig, walletCredentials);
+            Semaphore inFlight = new Semaphore(MAX_CONCURRENT_UNPACKS);
+            List<CompletableFuture<byte[]>> futures = new ArrayList<>(jwes.length);
+            for (String jwe : jwes) {
+                inFlight.acquire();
+                CompletableFuture<byte[]> future;
+                try {
+                    future = Crypto.unpackMessage(wallet, BridgeEncoding.decode(jwe, BridgeEncoding.UTF8));
+                } catch (Exception e) {
+                    future = new CompletableFuture<>();
+                    future.completeExceptionally(e);
+                }
+                future.whenComplete((result, error) -> inFlight.release());
+                futures.add(future);
             }
-        } catch (Exception e) {
-            IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
-            promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
-        } finally {
-            if (pool != null) {
-                closePoolLedger(pool);
+            WritableArray response = new WritableNativeArray();
+            for (CompletableFuture<byte[]> future : futures) {
+                WritableMap item = Arguments.createMap();
+                try {
+                    item.putString("message", BridgeEncoding.encode(future.get(), BridgeEncoding.UTF8));
+                } catch (Exception e) {
+                    item.putString("error", new IndySdkRejectResponse(e).toJson());
+                }
+                response.pushMap(item);
             }
+            return response;
+        });
+    }
+
+    /**
+     * Takes a whole batch of {id, message} items as the mediator socket delivers them, drops
+     * the ids already stored, adds the rest as SSIMessage records and unpacks them. Every stored
+     * message is emitted as an "inboundMessage" event {id, message | error} before the promise
+     * resolves to {received, accepted, duplicates, failed}.
+     */
+    @ReactMethod
+    public void ingestInboundMessages(String walletConfig, String walletCredentials, String messages, Promise promise) {
+        run("ingestInboundMessages", executors.wallet(), promise, () -> {
+            Wallet wallet = getWallet(walletConfig, walletCredentials);
+            return inboundMessages.ingest(WalletRegistry.walletId(walletConfig), wallet, new JSONArray(messages),
+                    this::emitInboundMessage).toString();
+        });
+    }
+
+    @ReactMethod
+    public void cryptoSignEncoded(String walletConfig, String walletCredentials, String signerVk, String message, String encoding,
+                                  Promise promise) {
+        run("cryptoSignEncoded", executors.wallet(), promise, () -> {
+            Wallet wallet = getWallet(walletConfig, walletCredentials);
+            byte[] signature = Crypto.cryptoSign(wallet, signerVk, BridgeEncoding.decode(message, encoding)).get();
+            return BridgeEncoding.encodeBase64(signature);
+        });
+    }
+
+    @ReactMethod
+    public void cryptoVerifyEncoded(String signerVk, String message, String encoding, String signature, Promise promise) {
+        run("cryptoVerifyEncoded", executors.anoncreds(), promise, () ->
+                Crypto.cryptoVerify(signerVk, BridgeEncoding.decode(message, encoding), BridgeEncoding.decodeBase64(signature)).get());
+    }
+
+    /**
+     * Signs a batch of {signerVk, message} maps, keeping up to {@link #MAX_CONCURRENT_SIGNS}
+     * wallet sign operations in flight. Messages are decoded with {@code encoding}; resolves to one
+     * {signature} (base64) or {error} map per item, in input order.
+     */
+    @ReactMethod
+    public void cryptoSignBatch(String walletConfig, String walletCredentials, ReadableArray items, String encoding,
+                                Promise promise) {
+        List<String[]> requests = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            ReadableMap item = items.getMap(i);
+            requests.add(new String[]{item.getString("signerVk"), item.getString("message")});
         }
+        run("cryptoSignBatch", executors.wallet(), promise, () -> {
+            Wallet wallet = getWallet(walletConfig, walletCredentials);
+            Semaphore inFlight = new Semaphore(MAX_CONCURRENT_SIGNS);
+            List<CompletableFuture<byte[]>> signatures = new ArrayList<>(requests.size());
+            for (String[] request : requests) {
+                inFlight.acquire();
+                CompletableFuture<byte[]> signature;
+                try {
+                    signature = Crypto.cryptoSign(wallet, request[0], BridgeEncoding.decode(request[1], encoding));
+                } catch (Exception e) {
+                    signature = new CompletableFuture<>();
+                    signature.completeExceptionally(e);
+                }
+                signature.whenComplete((result, error) -> inFlight.release());
+                signatures.add(signature);
+            }
+            WritableArray response = new WritableNativeArray();
+            for (CompletableFuture<byte[]> signature : signatures) {
+                WritableMap result = Arguments.createMap();
+                try {
+                    result.putString("signature", BridgeEncoding.encodeBase64(signature.get()));
+                } catch (Exception e) {
+                    result.putString("error", new IndySdkRejectResponse(e).toJson());
+                }
+                response.pushMap(result);
+            }
+            return response;
+        });
     }
 
+    /**
+     * Verifies a batch of {signerVk, message, signature} maps in parallel on the anoncreds executor,
+     * keeping up to {@link #MAX_CONCURRENT_VERIFIES} in flight. Messages are decoded with {@code encoding} and signatures are base64; resolves to one
+     * {verified} or {error} map per item, in input order. No wallet is needed.
+     */
     @ReactMethod
-    public void getRevocRegDef(String submitterDid, String id, String poolName, String poolConfig, Promise promise) {
-        Pool pool = null;
-        try {
-            String revocRegDefRequest = Ledger.buildGetRevocRegDefRequest(submitterDid, id).get();
+    public void cryptoVerifyBatch(ReadableArray items, String encoding, Promise promise) {
+        long started = metrics.start();
+        Tracer.Span span = tracer.begin("cryptoVerifyBatch").put("count", items.size());
+        IndyExecutors.Throttle anoncreds = new IndyExecutors.Throttle(executors.anoncreds(), MAX_CONCURRENT_VERIFIES);
+        List<CompletableFuture<Boolean>> verifications = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            ReadableMap item = items.getMap(i);
+            String signerVk = item.getString("signerVk");
+            String message = item.getString("message");
+            String signature = item.getString("signature");
+            verifications.add(anoncreds.supply(() -> Crypto.cryptoVerify(signerVk,
+                    BridgeEncoding.decode(message, encoding), BridgeEncoding.decodeBase64(signature)).get()));
+        }
+        span.leave();
+        CompletableFuture.allOf(verifications.toArray(new CompletableFuture[0])).whenComplete((ignored, error) -> {
+            span.end();
+            WritableArray response = new WritableNativeArray();
+            for (CompletableFuture<Boolean> verification : verifications) {
+                WritableMap result = Arguments.createMap();
+                try {
+                    result.putBoolean("verified", verification.join());
+                } catch (CompletionException e) {
+                    result.putString("error", new IndySdkRejectResponse(e).toJson());
+                }
+                response.pushMap(result);
+            }
+            metrics.record("cryptoVerifyBatch", started, null);
+            promise.resolve(response);
+        });
+    }
 
-            pool = openPoolLedger(poolName, poolConfig, promise);
-            if (pool != null) {
-                String revocRegDefResponse = Ledger.submitRequest(pool, revocRegDefRequest).get();
-                LedgerResults.ParseResponseResult responseResult = Ledger.parseGetRevocRegDefResponse(revocRegDefResponse).get();
-                promise.resolve(responseResult.getObjectJson());
+    @ReactMethod
+    public void proverCreateCredentialReq(String walletConfig, String walletCredentials, String proverDid,
+                                          String credentialOfferJson, String credentialDefJson, String masterSecret, Promise promise) {
+        run("proverCreateCredentialReq", executors.anoncreds(), promise, () -> {
+            Wallet wallet = getWallet(walletConfig, walletCredentials);
+            AnoncredsResults.ProverCreateCredentialRequestResult credentialRequestResult = Anoncreds
+                    .proverCreateCredentialReq(wallet, proverDid, credentialOfferJson,
+                            credentialDefJson, masterSecret)
+                    .get();
+            WritableArray response = new WritableNativeArray();
+            response.pushString(credentialRequestResult.getCredentialRequestJson());
+            response.pushString(credentialRequestResult.getCredentialRequestMetadataJson());
+            return response;
+        });
+    }
 
+    @ReactMethod
+    public void proverStoreCredential(String walletConfig, String walletCredentials, String credId,
+                                      String credReqMetadataJson, String credJson, String credDefJson, String revRegDefJson, Promise promise) {
+        run("proverStoreCredential", executors.anoncreds(), promise, () -> {
+            Wallet wallet = getWallet(walletConfig, walletCredentials);
+            String outputCredId = Anoncreds.proverStoreCredential(wallet, credId, credReqMetadataJson,
+                    credJson, credDefJson, revRegDefJson).get();
+            JSONObject credential = new JSONObject(credJson);
+            if (credential.has("rev_reg_id") && !credential.isNull("rev_reg_id")) {
+                tailsStore.addReferencedRevRegId(WalletRegistry.walletId(walletConfig), credential.getString("rev_reg_id"));
             }
-        } catch (Exception e) {
-            IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
-            promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
-        } finally {
-            if (pool != null) {
-                closePoolLedger(pool);
+            return outputCredId;
+        });
+    }
+
+    @ReactMethod
+    public void getRevocRegDefJson(String poolName, String poolConfig, String submitterDid, String revRegDefId, Promise promise) {
+        run("getRevocRegDefJson", executors.ledger(), promise, () -> getRevocRegDefObject(poolName, null, submitterDid, revRegDefId));
+    }
+
+    @ReactMethod
+    public void getRevocRegsJson(String poolName, String poolConfig, String submitterDid, String revRegDefId, String timestamp, Promise promise) {
+        run("getRevocRegsJson", executors.ledger(), promise, () -> {
+            Pool pool = poolManager.acquire(poolName);
+            try {
+                String revocRegsJsonRequest = Ledger.buildGetRevocRegRequest(submitterDid, revRegDefId, Long.parseLong(timestamp)).get();
+                String revocRegsJsonResponse = submitRequest(poolName, pool, revocRegsJsonRequest);
+                LedgerResults.ParseRegistryResponseResult responseResult = Ledger.parseGetRevocRegResponse(revocRegsJsonResponse).get();
+                return responseResult.getObjectJson();
+            } finally {
+                closePoolLedger(poolName);
             }
+        });
+    }
+
+    @ReactMethod
+    public void verifierVerifyProof(String proofRequest, String proof,
+                                    String schemas, String credentialDefs, String revRegDefs, String revRegsObj, Promise promise) {
+        run("verifierVerifyProof", executors.anoncreds(), promise, () ->
+                Anoncreds.verifierVerifyProof(proofRequest, proof, schemas, credentialDefs, revRegDefs, revRegsObj).get());
+    }
+
+    /**
+     * Verifies a batch of proofs in parallel on the anoncreds executor, keeping up to
+     * {@link #MAX_CONCURRENT_VERIFIES} in flight. Each item is a map with
+     * proofRequest, proof, schemas, credentialDefs, revRegDefs and revRegs JSON strings.
+     * Resolves to one {verified} or {error} map per item, in input order.
+     */
+    @ReactMethod
+    public void verifierVerifyProofs(ReadableArray proofArray, Promise promise) {
+        long started = metrics.start();
+        Tracer.Span span = tracer.begin("verifierVerifyProofs").put("count", proofArray.size());
+        IndyExecutors.Throttle anoncreds = new IndyExecutors.Throttle(executors.anoncreds(), MAX_CONCURRENT_VERIFIES);
+        List<CompletableFuture<Boolean>> verifications = new ArrayList<>(proofArray.size());
+        for (int i = 0; i < proofArray.size(); i++) {
+            ReadableMap item = proofArray.getMap(i);
+            String proofRequest = item.getString("proofRequest");
+            String proof = item.getString("proof");
+            String schemas = item.getString("schemas");
+            String credentialDefs = item.getString("credentialDefs");
+            String revRegDefs = item.hasKey("revRegDefs") ? item.getString("revRegDefs") : "{}";
+            String revRegs = item.hasKey("revRegs") ? item.getString("revRegs") : "{}";
+            verifications.add(anoncreds.supply(() ->
+                    Anoncreds.verifierVerifyProof(proofRequest, proof, schemas, credentialDefs, revRegDefs, revRegs).get()));
         }
+        span.leave();
+        CompletableFuture.allOf(verifications.toArray(new CompletableFuture[0])).whenComplete((ignored, error) -> {
+            span.end();
+            WritableArray response = new WritableNativeArray();
+            for (CompletableFuture<Boolean> verification : verifications) {
+                WritableMap result = Arguments.createMap();
+                try {
+                    result.putBoolean("verified", verification.join());
+                } catch (CompletionException e) {
+                    result.putString("error", new IndySdkRejectResponse(e).toJson());
+                }
+                response.pushMap(result);
+            }
+            metrics.record("verifierVerifyProofs", started, null);
+            promise.resolve(response);
+        });
     }
 
-    private JSONObject getCredDefJson(Pool pool, String submitterDid, String credDefId) throws Exception {
-        JSONObject parseCredObj = new JSONObject();
-        try {
-            String credDefJsonRequest = Ledger.buildGetCredDefRequest(submitterDid, credDefId).get();
-            String credDefJsonResponse = Ledger.submitRequest(pool, credDefJsonRequest).get();
-            LedgerResults.ParseResponseResult responseResult = Ledger.parseGetCredDefResponse(credDefJsonResponse).get();
+    @ReactMethod
+    public void proverGetCredentials(String walletConfig, String walletCredentials, String filter, Promise promise) {
+        run("proverGetCredentials", executors.wallet(), promise, () -> {
+            Wallet wallet = getWallet(walletConfig, walletCredentials);
+            return Anoncreds.proverGetCredentials(wallet, filter).get();
+        });
+    }
+
+    @ReactMethod
+    public void proverGetCredential(String walletConfig, String walletCredentials, String credId, Promise promise) {
+        run("proverGetCredential", executors.wallet(), promise, () -> {
+            Wallet wallet = getWallet(walletConfig, walletCredentials);
+            return Anoncreds.proverGetCredential(wallet, credId).get();
+        });
+    }
+
+    @ReactMethod
+    public void getCredDef(String submitterDid, String id, String poolName, String poolConfig, Promise promise) {
+        run("getCredDef", executors.ledger(), promise, () -> getCredDefObject(poolName, null, submitterDid, id));
+    }
 
-            parseCredObj = new JSONObject(responseResult.getObjectJson());
+    @ReactMethod
+    public void getRevocRegDef(String submitterDid, String id, String poolName, String poolConfig, Promise promise) {
+        run("getRevocRegDef", executors.ledger(), promise, () -> getRevocRegDefObject(poolName, null, submitterDid, id));
+    }
 
+    private JSONObject getCredDefJson(String poolName, Pool pool, String submitterDid, String credDefId) throws Exception {
+        JSONObject parseCredObj = new JSONObject();
+        try {
+            parseCredObj = new JSONObject(getCredDefObject(poolName, pool, submitterDid, credDefId));
         } catch (Exception e) {
             throw new Exception(e.toString());
         }
@@ -603,245 +1130,578 @@ public class ArnimaSdk extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void getSchemasJson(String poolName, String poolConfig, String submitterDid, String schemaId, Promise promise) {
-        Pool pool = null;
-        try {
-            pool = openPoolLedger(poolName, poolConfig, promise);
-            String schemaJsonRequest = Ledger.buildGetSchemaRequest(submitterDid, schemaId).get();
-            String schemaJsonResponse = Ledger.submitRequest(pool, schemaJsonRequest).get();
-            LedgerResults.ParseResponseResult responseResult = Ledger.parseGetSchemaResponse(schemaJsonResponse).get();
-
-            promise.resolve(responseResult.getObjectJson());
-        } catch (Exception e) {
-            IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
-            promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
-        } finally {
-            if (pool != null) {
-                closePoolLedger(pool);
-            }
-        }
+        run("getSchemasJson", executors.ledger(), promise, () -> getSchemaObject(poolName, null, submitterDid, schemaId));
     }
 
     @ReactMethod
     public void proverCreateProof(String walletConfig, String walletCredentials, String proofRequest,
                                   String requestedCredentials, String masterSecret, String schemas, String credentialDefs, String revocObject, Promise promise) {
-        Wallet wallet = null;
-        try {
-            wallet = openWallet(walletConfig, walletCredentials, promise);
-            if (wallet != null) {
-                String cred_proof = Anoncreds.proverCreateProof(wallet, proofRequest,
-                        String.valueOf(requestedCredentials), masterSecret, String.valueOf(schemas),
-                        String.valueOf(credentialDefs), String.valueOf(revocObject)).get();
-                promise.resolve(cred_proof);
-            }
-        } catch (Exception e) {
-            IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
-            promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
-        }
+        run("proverCreateProof", executors.anoncreds(), promise, () -> {
+            Wallet wallet = getWallet(walletConfig, walletCredentials);
+            return Anoncreds.proverCreateProof(wallet, proofRequest,
+                    String.valueOf(requestedCredentials), masterSecret, String.valueOf(schemas),
+                    String.valueOf(credentialDefs), String.valueOf(revocObject)).get();
+        });
     }
 
     @ReactMethod
-    public void proverSearchCredentialsForProofReq(String proofRequest, Promise promise) {
-        try {
-            int searchHandle = credentialSearchIterator++;
-            Wallet wallet = walletMap.get(1);
+    public void proverSearchCredentialsForProofReq(String walletConfig, String walletCredentials, String proofRequest,
+                                                   Promise promise) {
+        int searchHandle = credentialSearchIterator.getAndIncrement();
+        run("proverSearchCredentialsForProofReq", executors.wallet(), promise, () -> {
+            Wallet wallet = getWallet(walletConfig, walletCredentials);
             CredentialsSearchForProofReq search = CredentialsSearchForProofReq.open(wallet, proofRequest, "{}").get();
             credentialSearchMap.put(searchHandle, search);
-            promise.resolve(searchHandle);
-        } catch (Exception e) {
-            IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
-            promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
-        }
+            return searchHandle;
+        });
     }
 
     @ReactMethod
     public void proverFetchCredentialsForProofReq(int searchHandle, String itemReferent, int count, Promise promise) {
-        try {
+        run("proverFetchCredentialsForProofReq", executors.wallet(), promise, () -> {
             CredentialsSearchForProofReq search = credentialSearchMap.get(searchHandle);
-            String recordsJson = search.fetchNextCredentials(itemReferent, count).get();
-            promise.resolve(recordsJson);
-        } catch (Exception e) {
-            IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
-            promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
-        }
+            return search.fetchNextCredentials(itemReferent, count).get();
+        });
     }
 
     @ReactMethod
     public void proverCloseCredentialsSearchForProofReq(int searchHandle, Promise promise) {
-        try {
+        run("proverCloseCredentialsSearchForProofReq", executors.wallet(), promise, () -> {
             CredentialsSearchForProofReq search = credentialSearchMap.get(searchHandle);
             search.close();
             credentialSearchMap.remove(searchHandle);
-            promise.resolve(null);
-        } catch (Exception e) {
-            IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
-            promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
-        }
+            return null;
+        });
     }
 
+    /**
+     * Opens a proof request search, drains every attribute and predicate referent and closes it
+     * again. {@code extraQuery} is the per-referent extra_query_json passed to the search and
+     * {@code perReferentLimit} caps the credentials returned per referent (0 for no cap).
+     * Resolves to a JSON map of referent to credentials.
+     */
     @ReactMethod
-    public void getSchema(String submitterDid, String schemaId, String poolName, String poolConfig, Promise promise) {
-        Pool pool = null;
-        try {
-            String schemaJsonRequest = Ledger.buildGetSchemaRequest(submitterDid, schemaId).get();
-            pool = openPoolLedger(poolName, poolConfig, promise);
-            if (pool != null) {
-                String schemaJsonResponse = Ledger.submitRequest(pool, schemaJsonRequest).get();
-                LedgerResults.ParseResponseResult responseResult = Ledger.parseGetSchemaResponse(schemaJsonResponse).get();
-                promise.resolve(responseResult.getObjectJson());
+    public void getCredentialsForProofReq(String walletConfig, String walletCredentials, String proofRequest, String extraQuery,
+                                          int perReferentLimit, Promise promise) {
+        run("getCredentialsForProofReq", executors.wallet(), promise, () -> {
+            Wallet wallet = getWallet(walletConfig, walletCredentials);
+            JSONObject proofRequestJson = new JSONObject(proofRequest);
+            List<String> referents = new ArrayList<>();
+            for (String section : new String[]{"requested_attributes", "requested_predicates"}) {
+                JSONObject items = proofRequestJson.optJSONObject(section);
+                if (items != null) {
+                    Iterator<String> keys = items.keys();
+                    while (keys.hasNext()) {
+                        referents.add(keys.next());
+                    }
+                }
             }
-        } catch (Exception e) {
-            IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
-            promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
-        } finally {
-            if (pool != null) {
-                closePoolLedger(pool);
+            String extraQueryJson = extraQuery == null || extraQuery.isEmpty() ? "{}" : extraQuery;
+            int pageSize = perReferentLimit > 0 ? Math.min(CREDENTIAL_SEARCH_PAGE_SIZE, perReferentLimit) : CREDENTIAL_SEARCH_PAGE_SIZE;
+
+            CredentialsSearchForProofReq search = CredentialsSearchForProofReq.open(wallet, proofRequest, extraQueryJson).get();
+            try {
+                JSONObject credentials = new JSONObject();
+                for (String referent : referents) {
+                    JSONArray referentCredentials = new JSONArray();
+                    while (perReferentLimit <= 0 || referentCredentials.length() < perReferentLimit) {
+                        int count = perReferentLimit > 0 ? Math.min(pageSize, perReferentLimit - referentCredentials.length()) : pageSize;
+                        JSONArray page = new JSONArray(search.fetchNextCredentials(referent, count).get());
+                        for (int i = 0; i < page.length(); i++) {
+                            referentCredentials.put(page.get(i));
+                        }
+                        if (page.length() < count) {
+                            break;
+                        }
+                    }
+                    credentials.put(referent, referentCredentials);
+                }
+                return credentials.toString();
+            } finally {
+                search.close();
             }
-        }
+        });
     }
 
-    private JSONObject getSchemaJson(Pool pool, String submitterDid, String schemaId) throws Exception {
+    @ReactMethod
+    public void getSchema(String submitterDid, String schemaId, String poolName, String poolConfig, Promise promise) {
+        run("getSchema", executors.ledger(), promise, () -> getSchemaObject(poolName, null, submitterDid, schemaId));
+    }
+
+    private JSONObject getSchemaJson(String poolName, Pool pool, String submitterDid, String schemaId) throws Exception {
         JSONObject parseSchemaObj = new JSONObject();
         try {
-            String schemaJsonRequest = Ledger.buildGetSchemaRequest(submitterDid, schemaId).get();
-            String schemaJsonResponse = Ledger.submitRequest(pool, schemaJsonRequest).get();
-            LedgerResults.ParseResponseResult responseResult = Ledger.parseGetSchemaResponse(schemaJsonResponse).get();
-
-            parseSchemaObj = new JSONObject(responseResult.getObjectJson());
-
+            parseSchemaObj = new JSONObject(getSchemaObject(poolName, pool, submitterDid, schemaId));
         } catch (Exception e) {
             throw new Exception(e.toString());
         }
         return parseSchemaObj;
     }
 
-    @ReactMethod
-    public void createRevocationStateObject(String poolName, String poolConfig, String submitterDid, String revRegId,
-                                            String credRevId,
-            String fromTime,String toTime,Promise promise)
-            throws Exception {
-        Pool pool = null;
-        JSONObject revocState = new JSONObject();
+    private String getSchemaObject(String poolName, Pool pool, String submitterDid, String schemaId) throws Exception {
+        return getCachedLedgerObject(poolName, pool, schemaId, ledgerPool -> {
+            String schemaJsonRequest = Ledger.buildGetSchemaRequest(submitterDid, schemaId).get();
+            String schemaJsonResponse = submitRequest(poolName, ledgerPool, schemaJsonRequest);
+            return Ledger.parseGetSchemaResponse(schemaJsonResponse).get().getObjectJson();
+        });
+    }
 
+    private String getCredDefObject(String poolName, Pool pool, String submitterDid, String credDefId) throws Exception {
+        return getCachedLedgerObject(poolName, pool, credDefId, ledgerPool -> {
+            String credDefJsonRequest = Ledger.buildGetCredDefRequest(submitterDid, credDefId).get();
+            String credDefJsonResponse = submitRequest(poolName, ledgerPool, credDefJsonRequest);
+            return Ledger.parseGetCredDefResponse(credDefJsonResponse).get().getObjectJson();
+        });
+    }
+
+    private String getRevocRegDefObject(String poolName, Pool pool, String submitterDid, String revRegDefId) throws Exception {
+        return getCachedLedgerObject(poolName, pool, revRegDefId, ledgerPool -> {
+            String revocRegDefRequest = Ledger.buildGetRevocRegDefRequest(submitterDid, revRegDefId).get();
+            String revocRegDefResponse = submitRequest(poolName, ledgerPool, revocRegDefRequest);
+            return Ledger.parseGetRevocRegDefResponse(revocRegDefResponse).get().getObjectJson();
+        });
+    }
+
+    private String getCachedLedgerObject(String poolName, Pool pool, String objectId, LedgerObjectReader reader) throws Exception {
+        Tracer.Span span = tracer.begin("ledger.read").put("poolName", poolName).put("objectId", objectId);
         try {
-            pool = openPoolLedger(poolName, poolConfig, promise);
-            if (pool != null) {
-                long from = Long.parseLong(fromTime);
-                long to=Long.parseLong(toTime);
-                if (from == to) {
-                  from = 0;
+            String objectJson = ledgerCache.get(poolName, objectId);
+            span.put("cached", objectJson != null);
+            if (objectJson != null) {
+                span.end();
+                return objectJson;
+            }
+            boolean acquired = pool == null;
+            Pool ledgerPool = acquired ? poolManager.acquire(poolName) : pool;
+            try {
+                objectJson = reader.read(ledgerPool);
+            } finally {
+                if (acquired) {
+                    closePoolLedger(poolName);
                 }
+            }
+            ledgerCache.put(poolName, objectId, objectJson);
+            span.end();
+            return objectJson;
+        } catch (Exception e) {
+            span.end(e);
+            throw e;
+        }
+    }
 
-                String revocRegDeltaRequest = Ledger
-                    .buildGetRevocRegDeltaRequest(submitterDid, revRegId, from, to).get();
-                String revocRegDeltaResponse = Ledger.submitRequest(pool, revocRegDeltaRequest).get();
-                LedgerResults.ParseRegistryResponseResult revRegDeltaJson = Ledger.parseGetRevocRegDeltaResponse(revocRegDeltaResponse)
-                        .get();
+    private interface LedgerObjectReader {
+        String read(Pool pool) throws Exception;
+    }
 
-                String revocRegDefRequest = Ledger.buildGetRevocRegDefRequest(submitterDid, revRegId).get();
-                String revocRegDefReponse = Ledger.submitRequest(pool, revocRegDefRequest).get();
-                LedgerResults.ParseResponseResult revocRegDefJson = Ledger
-                        .parseGetRevocRegDefResponse(revocRegDefReponse).get();
+    @ReactMethod
+    public void getLedgerCacheStats(Promise promise) {
+        run("getLedgerCacheStats", executors.ledger(), promise, () -> ledgerCache.getStats().toString());
+    }
 
-                String rootDir = getCurrentActivity().getExternalFilesDir(null).toString();
+    @ReactMethod
+    public void setLedgerCacheLimits(int maxMemoryEntries, double maxDiskBytes, Promise promise) {
+        run("setLedgerCacheLimits", executors.ledger(), promise, () -> {
+            ledgerCache.setLimits(maxMemoryEntries, (long) maxDiskBytes);
+            return null;
+        });
+    }
 
-                String filePath = rootDir + "/revoc/";
+    @ReactMethod
+    public void clearLedgerCache(Promise promise) {
+        run("clearLedgerCache", executors.ledger(), promise, () -> {
+            ledgerCache.clear();
+            return null;
+        });
+    }
 
-                JSONObject revRegDefObject = new JSONObject(revocRegDefJson.getObjectJson());
-                String fileURL = revRegDefObject.getJSONObject("value").getString("tailsLocation");
-                String fileName = revRegDefObject.getJSONObject("value").getString("tailsHash");
+    @ReactMethod
+    public void getTailsStoreStats(Promise promise) {
+        run("getTailsStoreStats", executors.ledger(), promise, () -> tailsStore.getStats().toString());
+    }
 
-                int count;
-                File revocFilePath = new File(filePath);
-                if (!revocFilePath.exists()) {
-                    revocFilePath.mkdir();
-                }
+    @ReactMethod
+    public void setTailsStoreLimit(double maxBytes, Promise promise) {
+        run("setTailsStoreLimit", executors.ledger(), promise, () -> {
+            tailsStore.setMaxBytes((long) maxBytes);
+            return null;
+        });
+    }
 
-                File revocFile = new File(filePath + "/" + fileName);
-                if (!revocFile.exists()) {
-                    revocFile.createNewFile();
-                    URL url = new URL(fileURL);
-
-                    URLConnection connection = url.openConnection();
-                    connection.connect();
-                    InputStream input = new BufferedInputStream(url.openStream(), 8192);
-                    OutputStream output = new FileOutputStream(revocFile);
-                    byte[] data = new byte[1024];
-                    long total = 0;
-                    while ((count = input.read(data)) != -1) {
-                        total += count;
-                        output.write(data, 0, count);
-                    }
-                    output.flush();
-                    output.close();
-                    input.close();
-                }
+    /**
+     * Turns latency and error recording on or off. With a positive {@code reportIntervalMs}
+     * a "metrics" event carrying a snapshot is emitted at that interval.
+     */
+    @ReactMethod
+    public void setMetricsEnabled(boolean enabled, int reportIntervalMs, Promise promise) {
+        metrics.setEnabled(enabled, reportIntervalMs);
+        promise.resolve(null);
+    }
 
-                String tailsWriterConfig = new JSONObject().put("base_dir", filePath).put("uri_pattern", "").toString();
-                BlobStorageReader blobStorageReaderCfg = BlobStorageReader.openReader("default", tailsWriterConfig).get();
+    /**
+     * Resolves the recorded metrics as JSON. Answered on the bridge thread rather than an Indy
+     * executor so a snapshot is available while those executors are saturated.
+     */
+    @ReactMethod
+    public void getMetrics(boolean reset, Promise promise) {
+        try {
+            promise.resolve(metrics.snapshot(reset).toString());
+        } catch (Exception e) {
+            IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
+            promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
+        }
+    }
+
+    /**
+     * Turns span recording on or off; {@code capacity} bounds the ring buffer (0 keeps the
+     * current size).
+     */
+    @ReactMethod
+    public void setTracingEnabled(boolean enabled, int capacity, Promise promise) {
+        tracer.setEnabled(enabled, capacity);
+        promise.resolve(null);
+    }
 
-                JSONObject revStateJson = new JSONObject(Anoncreds.createRevocationState(
-                        blobStorageReaderCfg.getBlobStorageReaderHandle(), revocRegDefJson.getObjectJson(),
-                        revRegDeltaJson.getObjectJson(), revRegDeltaJson.getTimestamp(), credRevId).get());
+    /**
+     * Tags every call started from now on with {@code correlationId}, until the matching
+     * endTraceCorrelation; nested or repeated ids are counted.
+     */
+    @ReactMethod
+    public void beginTraceCorrelation(String correlationId, Promise promise) {
+        tracer.beginCorrelation(correlationId);
+        promise.resolve(null);
+    }
 
-                revocState.put(String.valueOf(revRegDeltaJson.getTimestamp()), revStateJson);
+    @ReactMethod
+    public void endTraceCorrelation(String correlationId, Promise promise) {
+        tracer.endCorrelation(correlationId);
+        promise.resolve(null);
+    }
 
-                promise.resolve(revocState.toString());
+    /** Writes the recorded spans as Chrome trace-event JSON and resolves the file path. */
+    @ReactMethod
+    public void exportTrace(Promise promise) {
+        run("exportTrace", executors.wallet(), promise, () -> {
+            File file = new File(new File(reactContext.getExternalFilesDir(null), "traces"),
+                    "trace-" + System.currentTimeMillis() + ".json");
+            tracer.export(file);
+            return file.getAbsolutePath();
+        });
+    }
+
+    @ReactMethod
+    public void clearTrace(Promise promise) {
+        tracer.clear();
+        promise.resolve(null);
+    }
+
+    @ReactMethod
+    public void createRevocationStateObject(String poolName, String poolConfig, String submitterDid, String revRegId,
+                                            String credRevId,
+            String fromTime,String toTime,Promise promise) {
+        run("createRevocationStateObject", executors.ledger(), promise, () -> {
+            long from = Long.parseLong(fromTime);
+            long to = Long.parseLong(toTime);
+            if (from == to) {
+                from = 0;
             }
+            RevocationStateCache.State state = getRevocationState(poolName, null, submitterDid, revRegId, credRevId, from, to);
+            return revocationStateJson(state).toString();
+        });
+    }
+
+    private RevocationStateCache.State getRevocationState(String poolName, Pool pool, String submitterDid, String revRegId,
+                                                          String credRevId, long from, long to) throws Exception {
+        Tracer.Span span = tracer.begin("revocation.state").put("revRegId", revRegId).put("credRevId", credRevId)
+                .put("from", from).put("to", to);
+        try {
+            RevocationStateCache.State state = computeRevocationState(poolName, pool, submitterDid, revRegId, credRevId, from, to, span);
+            span.end();
+            return state;
         } catch (Exception e) {
-            IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
-            promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
+            span.end(e);
+            throw e;
+        }
+    }
+
+    private RevocationStateCache.State computeRevocationState(String poolName, Pool pool, String submitterDid, String revRegId,
+                                                              String credRevId, long from, long to, Tracer.Span span) throws Exception {
+        RevocationStateCache.State state = revocationStates.get(revRegId, credRevId, to);
+        span.put("cached", state != null);
+        if (state != null) {
+            return state;
+        }
+        boolean acquired = pool == null;
+        Pool ledgerPool = acquired ? poolManager.acquire(poolName) : pool;
+        try {
+            String revocRegDefJson = getRevocRegDefObject(poolName, ledgerPool, submitterDid, revRegId);
+
+            JSONObject revRegDefObject = new JSONObject(revocRegDefJson);
+            String fileURL = revRegDefObject.getJSONObject("value").getString("tailsLocation");
+            String fileName = revRegDefObject.getJSONObject("value").getString("tailsHash");
+            tailsDownloader.download(fileURL, fileName, revRegId);
+            BlobStorageReader blobStorageReader = revocationStates.getReader(tailsDownloader.getDirectory(), fileName);
+
+            RevocationStateCache.State previous = revocationStates.getLatestBefore(revRegId, credRevId, to);
+            long deltaFrom = previous != null ? previous.timestamp : from;
+            span.put("deltaFrom", deltaFrom);
+            String revocRegDeltaRequest = Ledger
+                    .buildGetRevocRegDeltaRequest(submitterDid, revRegId, deltaFrom, to).get();
+            String revocRegDeltaResponse = submitRequest(poolName, ledgerPool, revocRegDeltaRequest);
+            LedgerResults.ParseRegistryResponseResult revRegDeltaJson = Ledger.parseGetRevocRegDeltaResponse(revocRegDeltaResponse)
+                    .get();
+
+            String revStateJson;
+            if (previous != null) {
+                revStateJson = Anoncreds.updateRevocationState(blobStorageReader.getBlobStorageReaderHandle(),
+                        previous.stateJson, revocRegDefJson, revRegDeltaJson.getObjectJson(),
+                        revRegDeltaJson.getTimestamp(), credRevId).get();
+            } else {
+                revStateJson = Anoncreds.createRevocationState(blobStorageReader.getBlobStorageReaderHandle(),
+                        revocRegDefJson, revRegDeltaJson.getObjectJson(), revRegDeltaJson.getTimestamp(), credRevId).get();
+            }
+            state = new RevocationStateCache.State(revRegDeltaJson.getTimestamp(), revStateJson);
+            revocationStates.put(revRegId, credRevId, to, state);
+            return state;
         } finally {
-            if (pool != null) {
-                closePoolLedger(pool);
+            if (acquired) {
+                closePoolLedger(poolName);
             }
         }
     }
 
+    private static JSONObject revocationStateJson(RevocationStateCache.State state) throws Exception {
+        return new JSONObject().put(String.valueOf(state.timestamp), new JSONObject(state.stateJson));
+    }
+
+    /**
+     * Resolves everything proverCreateProof needs from the ledger in one call. The request is
+     * {"schemaIds": [...], "credDefIds": [...], "revocations": [{revRegId, credRevId, from, to}]};
+     * duplicate ids are fetched once and the lookups run concurrently over one pool handle, up to
+     * {@link #MAX_CONCURRENT_LEDGER_LOOKUPS} at a time.
+     * Revocation states are resolved once per revRegId, credRevId and to. Resolves to
+     * {"schemas": {...}, "credentialDefs": {...}, "revStates": {revRegId: {timestamp: state}},
+     * "timestamps": {"revRegId|credRevId|to": timestamp}}.
+     */
     @ReactMethod
-    public void exportWallet(String walletConfig, String walletCredentials, String config, Promise promise) {
-        Wallet wallet = null;
-        try {
-            wallet = openWallet(walletConfig, walletCredentials, promise);
-            if (wallet != null) {
-                Wallet.exportWallet(wallet, config).get();
-                promise.resolve("true");
+    public void resolveProofMaterial(String poolName, String poolConfig, String submitterDid, String materialRequest,
+                                     Promise promise) {
+        long started = metrics.start();
+        Tracer.Span span = tracer.begin("resolveProofMaterial").put("poolName", poolName);
+        Executor ledger = executors.ledger();
+        CompletableFuture<Pool> acquiredPool = IndyExecutors.supply(ledger, () -> poolManager.acquire(poolName));
+        span.leave();
+        acquiredPool.thenCompose(pool -> {
+            CompletableFuture<String> material;
+            IndyExecutors.Throttle lookups = new IndyExecutors.Throttle(ledger, MAX_CONCURRENT_LEDGER_LOOKUPS);
+            try {
+                JSONObject request = new JSONObject(materialRequest);
+                Map<String, CompletableFuture<String>> schemas = new LinkedHashMap<>();
+                for (String schemaId : jsonStrings(request.optJSONArray("schemaIds"))) {
+                    if (!schemas.containsKey(schemaId)) {
+                        schemas.put(schemaId, lookups.supply(() -> getSchemaObject(poolName, pool, submitterDid, schemaId)));
+                    }
+                }
+                Map<String, CompletableFuture<String>> credDefs = new LinkedHashMap<>();
+                for (String credDefId : jsonStrings(request.optJSONArray("credDefIds"))) {
+                    if (!credDefs.containsKey(credDefId)) {
+                        credDefs.put(credDefId, lookups.supply(() -> getCredDefObject(poolName, pool, submitterDid, credDefId)));
+                    }
+                }
+                Map<String, CompletableFuture<RevocationStateCache.State>> revStates = new LinkedHashMap<>();
+                JSONArray revocations = request.optJSONArray("revocations");
+                for (int i = 0; revocations != null && i < revocations.length(); i++) {
+                    JSONObject revocation = revocations.getJSONObject(i);
+                    String revRegId = revocation.getString("revRegId");
+                    String credRevId = revocation.getString("credRevId");
+                    long from = revocation.getLong("from");
+                    long to = revocation.getLong("to");
+                    long deltaFrom = from == to ? 0 : from;
+                    String revocationKey = revRegId + "|" + credRevId + "|" + to;
+                    if (!revStates.containsKey(revocationKey)) {
+                        revStates.put(revocationKey, lookups.supply(() ->
+                                getRevocationState(poolName, pool, submitterDid, revRegId, credRevId, deltaFrom, to)));
+                    }
+                }
+
+                List<CompletableFuture<?>> all = new ArrayList<>();
+                all.addAll(schemas.values());
+                all.addAll(credDefs.values());
+                all.addAll(revStates.values());
+                material = CompletableFuture.allOf(all.toArray(new CompletableFuture[0])).thenApply(ignored -> {
+                    try {
+                        JSONObject schemasJson = new JSONObject();
+                        for (Map.Entry<String, CompletableFuture<String>> schema : schemas.entrySet()) {
+                            schemasJson.put(schema.getKey(), new JSONObject(schema.getValue().join()));
+                        }
+                        JSONObject credDefsJson = new JSONObject();
+                        for (Map.Entry<String, CompletableFuture<String>> credDef : credDefs.entrySet()) {
+                            credDefsJson.put(credDef.getKey(), new JSONObject(credDef.getValue().join()));
+                        }
+                        JSONObject revStatesJson = new JSONObject();
+                        JSONObject timestampsJson = new JSONObject();
+                        for (Map.Entry<String, CompletableFuture<RevocationStateCache.State>> revState : revStates.entrySet()) {
+                            String revRegId = revState.getKey().substring(0, revState.getKey().indexOf('|'));
+                            RevocationStateCache.State state = revState.getValue().join();
+                            JSONObject byTimestamp = revStatesJson.optJSONObject(revRegId);
+                            if (byTimestamp == null) {
+                                byTimestamp = new JSONObject();
+                                revStatesJson.put(revRegId, byTimestamp);
+                            }
+                            byTimestamp.put(String.valueOf(state.timestamp), new JSONObject(state.stateJson));
+                            timestampsJson.put(revState.getKey(), state.timestamp);
+                        }
+                        return new JSONObject()
+                                .put("schemas", schemasJson)
+                                .put("credentialDefs", credDefsJson)
+                                .put("revStates", revStatesJson)
+                                .put("timestamps", timestampsJson)
+                                .toString();
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+                });
+            } catch (Exception e) {
+                material = new CompletableFuture<>();
+                material.completeExceptionally(e);
             }
-        } catch (Exception e) {
-            IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
-            promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
+            return material.whenComplete((result, error) -> closePoolLedger(poolName));
+        }).whenComplete((result, error) -> {
+            span.end(error);
+            if (error != null) {
+                IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(error);
+                metrics.record("resolveProofMaterial", started, rejectResponse.getCode());
+                promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), error);
+            } else {
+                metrics.record("resolveProofMaterial", started, null);
+                promise.resolve(result);
+            }
+        });
+    }
+
+    private static List<String> jsonStrings(JSONArray array) throws Exception {
+        List<String> strings = new ArrayList<>();
+        for (int i = 0; array != null && i < array.length(); i++) {
+            strings.add(array.getString(i));
         }
+        return strings;
+    }
+
+    @ReactMethod
+    public void exportWallet(String walletConfig, String walletCredentials, String config, Promise promise) {
+        run("exportWallet", executors.wallet(), promise, () -> {
+            Wallet wallet = getWallet(walletConfig, walletCredentials);
+            Wallet.exportWallet(wallet, config).get();
+            return "true";
+        });
+    }
+
+    /**
+     * Starts a background export and resolves its job id straight away. Progress, completion
+     * and failure arrive as "walletExportProgress" events. {@code options} may set
+     * {@code compress}, {@code chunkBytes} and {@code compressionLevel}; a compressed export is
+     * a directory at the configured path holding gzip chunks and a checksummed manifest. The
+     * wallet is not evicted, and closing it waits, until libindy has written the export.
+     */
+    @ReactMethod
+    public void startWalletExport(String walletConfig, String walletCredentials, String config, String options, Promise promise) {
+        run("startWalletExport", executors.wallet(), promise, () -> {
+            Wallet wallet = wallets.acquire(walletConfig, walletCredentials);
+            try {
+                return walletExports.start(wallet, config, new JSONObject(options == null ? "{}" : options), () -> {
+                    try {
+                        wallets.release(wallet);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                });
+            } catch (Exception e) {
+                wallets.release(wallet);
+                throw e;
+            }
+        });
+    }
+
+    @ReactMethod
+    public void cancelWalletExport(String jobId, Promise promise) {
+        promise.resolve(walletExports.cancel(jobId));
+    }
+
+    /**
+     * Verifies a compressed export against its manifest while decompressing it into
+     * {@code outputPath}, which can then be passed to importWallet.
+     */
+    @ReactMethod
+    public void restoreWalletExportArchive(String archivePath, String outputPath, Promise promise) {
+        run("restoreWalletExportArchive", walletExports.executor(), promise, () -> {
+            WalletExportArchive.restore(new File(archivePath), new File(outputPath), (done, total) -> true);
+            return outputPath;
+        });
     }
 
     @ReactMethod
     public void importWallet(String walletConfig, String walletCredentials, String config, String types, Promise promise) {
-        Wallet wallet = null;
-        JSONArray finalObj = new JSONArray();
-        try {
+        run("importWallet", executors.wallet(), promise, () -> {
             Wallet.importWallet(walletConfig, walletCredentials, config).get();
-            wallet = openWallet(walletConfig, walletCredentials, promise);
-            if (wallet != null) {
-                JSONArray typesArray = new JSONArray(types);
-                for (int i = 0; i < typesArray.length(); i++) {
-                    JSONObject j = typesArray.getJSONObject(i);
-
-                    WalletSearch search = WalletSearch.open(wallet, j.getString("type"), "{}", "{\"retrieveTags\":true,\"retrieveType \":true, \"retrieveType\": true, \"retrieveTotalCount\": true }")
-                            .get();
-                    String recordsJson = WalletSearch.searchFetchNextRecords(wallet, search, 100).get();
-                    JSONObject convert = new JSONObject(recordsJson);
-                    if (convert.getInt("totalCount") > 0) {
-                        JSONArray records = convert.getJSONArray("records");
-                        for (int z = 0; z < records.length(); z++) {
-                            finalObj.put(records.get(z));
-                            WalletRecord.delete(wallet, j.getString("type"), records.getJSONObject(z).getString("id"));
-                        }
-                    }
+            Wallet wallet = getWallet(walletConfig, walletCredentials);
+            WalletRecordExtractor.ArraySink sink = new WalletRecordExtractor.ArraySink();
+            new WalletRecordExtractor(wallet, WalletRecordExtractor.DEFAULT_PAGE_SIZE, null).extract(WalletRecordExtractor.parseTypes(types), sink);
+            return sink.getRecords().toString();
+        });
+    }
+
+    /**
+     * Imports a wallet and moves the records of {@code types} out of it without holding them
+     * all in memory. {@code options} is {@code {importId, pageSize?, outputPath?}}: with an
+     * output path the records are streamed into that file as one JSON array, otherwise each
+     * page is emitted as a "walletImportRecords" event. "walletImportProgress" events report
+     * extracted and deleted counts. Resolves to a summary per type once every delete is done.
+     */
+    @ReactMethod
+    public void importWalletStreamed(String walletConfig, String walletCredentials, String config, String types, String options,
+                                     Promise promise) {
+        run("importWalletStreamed", executors.wallet(), promise, () -> {
+            JSONObject importOptions = new JSONObject(options);
+            String importId = importOptions.getString("importId");
+            String outputPath = importOptions.isNull("outputPath") ? null : importOptions.optString("outputPath", null);
+            int pageSize = importOptions.optInt("pageSize", WalletRecordExtractor.DEFAULT_PAGE_SIZE);
+            List<String> recordTypes = WalletRecordExtractor.parseTypes(types);
+
+            Wallet.importWallet(walletConfig, walletCredentials, config).get();
+            Wallet wallet = getWallet(walletConfig, walletCredentials);
+            WalletRecordExtractor extractor = new WalletRecordExtractor(wallet, pageSize,
+                    (type, extracted, deleted, totalCount) -> emitWalletImportProgress(importId, type, extracted, deleted, totalCount));
+            JSONObject summary;
+            if (outputPath != null) {
+                WalletRecordExtractor.FileSink sink = new WalletRecordExtractor.FileSink(new File(outputPath));
+                try {
+                    summary = extractor.extract(recordTypes, sink);
+                } finally {
+                    sink.close();
                 }
+                summary.put("outputPath", outputPath);
+            } else {
+                summary = extractor.extract(recordTypes, (type, records) -> emitWalletImportRecords(importId, type, records));
             }
-            promise.resolve(finalObj.toString());
-        } catch (Exception e) {
-            IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
-            promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
-        }
+            return summary.put("importId", importId).toString();
+        });
+    }
+
+    private void emitWalletImportRecords(String importId, String type, JSONArray records) {
+        WritableMap event = Arguments.createMap();
+        event.putString("importId", importId);
+        event.putString("type", type);
+        event.putString("records", records.toString());
+        reactContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit("walletImportRecords", event);
+    }
+
+    private void emitWalletImportProgress(String importId, String type, int extracted, int deleted, int totalCount) {
+        WritableMap event = Arguments.createMap();
+        event.putString("importId", importId);
+        event.putString("type", type);
+        event.putInt("extracted", extracted);
+        event.putInt("deleted", deleted);
+        event.putInt("totalCount", totalCount);
+        reactContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit("walletImportProgress", event);
     }
 
     private byte[] readableArrayToBuffer(ReadableArray arr) {
@@ -852,43 +1712,55 @@ public class ArnimaSdk extends ReactContextBaseJavaModule {
         return buffer;
     }
 
-
-    @ReactMethod
-    public void getRequestRedirectionUrl(String url, Promise promise) {
-        new GetRequestRedirectionUrl().execute(url, promise);
+    private String[] readableArrayToStrings(ReadableArray arr) {
+        String[] strings = new String[arr.size()];
+        for (int i = 0; i < arr.size(); i++) {
+            strings[i] = arr.getString(i);
+        }
+        return strings;
     }
 
-    private class GetRequestRedirectionUrl extends AsyncTask {
-        Promise promise = null;
-
-        @Override
-        protected Object doInBackground(Object[] objects) {
-            try {
-                promise = (Promise) objects[1];
-                URL urlObj = new URL(objects[0].toString());
+    private byte[] createForwardMessage(String to, byte[] packedMessage) {
+        String forwardMessage = "{\"@type\":" + JSONObject.quote(FORWARD_MESSAGE_TYPE)
+                + ",\"to\":" + JSONObject.quote(to)
+                + ",\"msg\":" + new String(packedMessage, UTF_8) + "}";
+        return forwardMessage.getBytes(UTF_8);
+    }
 
-                HttpURLConnection connection = (HttpURLConnection) urlObj.openConnection();
-                connection.setRequestMethod("GET");
-                connection.setInstanceFollowRedirects(false);
+    private WritableArray bufferToWritableArray(byte[] buffer) {
+        WritableArray result = new WritableNativeArray();
+        for (byte b : buffer) {
+            result.pushInt(b);
+        }
+        return result;
+    }
 
-                int responseCode = connection.getResponseCode();
 
-                if (responseCode == 302) {
-                    String location = connection.getHeaderField("location");
-                    promise.resolve(location);
-                }
+    @ReactMethod
+    public void getRequestRedirectionUrl(String url, Promise promise) {
+        long started = metrics.start();
+        IndyExecutors.supply(executors.ledger(), () -> {
+            URL urlObj = new URL(url);
+
+            HttpURLConnection connection = (HttpURLConnection) urlObj.openConnection();
+            connection.setRequestMethod("GET");
+            connection.setInstanceFollowRedirects(false);
+
+            int responseCode = connection.getResponseCode();
+
+            return responseCode == 302 ? connection.getHeaderField("location") : null;
+        }).whenComplete((location, error) -> {
+            if (error != null) {
+                IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(error);
+                metrics.record("getRequestRedirectionUrl", started, rejectResponse.getCode());
+                promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), error);
+            } else if (location != null) {
+                metrics.record("getRequestRedirectionUrl", started, null);
+                promise.resolve(location);
+            } else {
                 promise.reject("Unable to fetch URL", "Unable to fetch URL");
-            } catch (Exception e) {
-                IndySdkRejectResponse rejectResponse = new IndySdkRejectResponse(e);
-                promise.reject(rejectResponse.getCode(), rejectResponse.toJson(), e);
             }
-            return promise;
-        }
-
-        @Override
-        protected void onPreExecute() {
-            super.onPreExecute();
-        }
+        });
     }
 
     class IndySdkRejectResponse {
@@ -898,12 +1770,24 @@ public class ArnimaSdk extends ReactContextBaseJavaModule {
         private IndySdkRejectResponse(Throwable e) {
             String code = "0";
 
+            if (e instanceof CompletionException && e.getCause() != null) {
+                e = e.getCause();
+            }
+
             if (e instanceof ExecutionException) {
                 Throwable cause = e.getCause();
                 if (cause instanceof IndyException) {
                     IndyException indyException = (IndyException) cause;
                     code = String.valueOf(indyException.getSdkErrorCode());
                 }
+            } else if (e instanceof IndyException) {
+                code = String.valueOf(((IndyException) e).getSdkErrorCode());
+            } else if (e instanceof RejectedExecutionException) {
+                code = IndyExecutors.BUSY_CODE;
+            } else if (e instanceof WalletSearchRegistry.ClosedException) {
+                code = WalletSearchRegistry.CLOSED_CODE;
+            } else if (e instanceof PoolManager.InUseException) {
+                code = PoolManager.IN_USE_CODE;
             }
 
             String message = e.getMessage();
@@ -925,4 +1809,4 @@ public class ArnimaSdk extends ReactContextBaseJavaModule {
             return gson.toJson(this);
         }
     }
-}
\ No newline at end of file
+}
@@ -15,9 +15,19 @@ import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.uimanager.ViewManager;
 import com.facebook.react.bridge.JavaScriptModule;
 public class ArnimaSdkPackage implements ReactPackage {
+    private final WalletKeyProtector walletKeyProtector;
+
+    public ArnimaSdkPackage() {
+      this(new KeystoreWalletKeyProtector());
+    }
+
+    public ArnimaSdkPackage(WalletKeyProtector walletKeyProtector) {
+      this.walletKeyProtector = walletKeyProtector;
+    }
+
     @Override
     public List<NativeModule> createNativeModules(ReactApplicationContext reactContext) {
-      return Arrays.<NativeModule>asList(new ArnimaSdk(reactContext));
+      return Arrays.<NativeModule>asList(new ArnimaSdk(reactContext, walletKeyProtector));
     }
 
     // Deprecated from RN 0.47
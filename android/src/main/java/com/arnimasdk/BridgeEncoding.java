@@ -0,0 +1,59 @@
+/*
+  Copyright AyanWorks Technology Solutions Pvt. Ltd. All Rights Reserved.
+  SPDX-License-Identifier: Apache-2.0
+*/
+package com.arnimasdk;
+
+import android.util.Base64;
+
+import java.nio.charset.Charset;
+
+/**
+ * Moves binary data across the bridge as one string instead of one boxed number per byte.
+ * "utf8" is meant for JSON payloads and JWEs, "base64" for signatures and other binary data.
+ * Base64 input may use either the standard or the URL-safe alphabet, with or without padding.
+ */
+public final class BridgeEncoding {
+
+    public static final String UTF8 = "utf8";
+    public static final String BASE64 = "base64";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private BridgeEncoding() {
+    }
+
+    public static byte[] decode(String data, String encoding) {
+        if (BASE64.equalsIgnoreCase(encoding)) {
+            return decodeBase64(data);
+        }
+        if (UTF8.equalsIgnoreCase(encoding) || "utf-8".equalsIgnoreCase(encoding)) {
+            return data.getBytes(UTF_8);
+        }
+        throw new IllegalArgumentException("Unsupported encoding: " + encoding);
+    }
+
+    public static String encode(byte[] data, String encoding) {
+        if (BASE64.equalsIgnoreCase(encoding)) {
+            return encodeBase64(data);
+        }
+        if (UTF8.equalsIgnoreCase(encoding) || "utf-8".equalsIgnoreCase(encoding)) {
+            return new String(data, UTF_8);
+        }
+        throw new IllegalArgumentException("Unsupported encoding: " + encoding);
+    }
+
+    public static byte[] decodeBase64(String data) {
+        String normalized = data.trim().replace('-', '+').replace('_', '/');
+        int padding = (4 - normalized.length() % 4) % 4;
+        StringBuilder builder = new StringBuilder(normalized);
+        for (int i = 0; i < padding; i++) {
+            builder.append('=');
+        }
+        return Base64.decode(builder.toString(), Base64.NO_WRAP);
+    }
+
+    public static String encodeBase64(byte[] data) {
+        return Base64.encodeToString(data, Base64.NO_WRAP);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+  Copyright AyanWorks Technology Solutions Pvt. Ltd. All Rights Reserved.
+  SPDX-License-Identifier: Apache-2.0
+*/
+package com.arnimasdk;
+
+import android.util.Base64;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.Locale;
+
+/**
+ * Pool genesis transactions stored under the SHA-256 of their content, so every pool config
+ * points at its own unchanging file and pools never overwrite each other's genesis. Next to
+ * them the store remembers which genesis hash each pool config was last created from, which
+ * tells whether an existing config can be reused.
+ */
+public class GenesisStore {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File directory;
+
+    public GenesisStore(File directory) {
+        this.directory = directory;
+    }
+
+    public static String hash(String genesis) throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(genesis.getBytes(UTF_8));
+        StringBuilder builder = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            builder.append(String.format(Locale.US, "%02x", b & 0xff));
+        }
+        return builder.toString();
+    }
+
+    /** Returns the genesis file for {@code hash}, writing {@code genesis} first if it is not stored yet. */
+    public File store(String genesis, String hash) throws IOException {
+        File target = new File(directory, hash + ".txn");
+        if (target.isFile()) {
+            return target;
+        }
+        write(target, genesis);
+        return target;
+    }
+
+    /** The genesis hash {@code poolName} was last configured with, or null when unknown. */
+    public String configuredHash(String poolName) {
+        File file = poolFile(poolName);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            InputStream input = new FileInputStream(file);
+            try {
+                byte[] bytes = new byte[(int) file.length()];
+                int offset = 0;
+                int count;
+                while (offset < bytes.length && (count = input.read(bytes, offset, bytes.length - offset)) != -1) {
+                    offset += count;
+                }
+                return new String(bytes, 0, offset, UTF_8).trim();
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    public void setConfiguredHash(String poolName, String hash) throws IOException {
+        write(poolFile(poolName), hash);
+    }
+
+    public void forget(String poolName) {
+        poolFile(poolName).delete();
+    }
+
+    private void write(File target, String content) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create genesis directory " + directory);
+        }
+        File tempFile = new File(directory, target.getName() + ".tmp");
+        OutputStream output = new FileOutputStream(tempFile);
+        try {
+            output.write(content.getBytes(UTF_8));
+        } finally {
+            output.close();
+        }
+        if (!tempFile.renameTo(target)) {
+            tempFile.delete();
+            throw new IOException("Cannot store " + target);
+        }
+    }
+
+    private File poolFile(String poolName) {
+        String name = Base64.encodeToString(poolName.getBytes(UTF_8), Base64.URL_SAFE | Base64.NO_WRAP | Base64.NO_PADDING);
+        return new File(directory, name + ".pool");
+    }
+}
@@ -0,0 +1,215 @@
+/*
+  Copyright AyanWorks Technology Solutions Pvt. Ltd. All Rights Reserved.
+  SPDX-License-Identifier: Apache-2.0
+*/
+package com.arnimasdk;
+
+import org.hyperledger.indy.sdk.crypto.Crypto;
+import org.hyperledger.indy.sdk.non_secrets.WalletRecord;
+import org.hyperledger.indy.sdk.non_secrets.WalletSearch;
+import org.hyperledger.indy.sdk.wallet.Wallet;
+import org.hyperledger.indy.sdk.wallet.WalletItemAlreadyExistsException;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Stores and unpacks batches of messages delivered by the mediator. Each wallet keeps an
+ * in-memory index of the message ids it has seen, loaded from its stored messages on first use,
+ * so a redelivered message is dropped without a wallet query. The index is bounded and only a
+ * fast path: a message it has forgotten still fails its add as a duplicate, because the message
+ * id is the record id. New messages are added with a bounded number of writes in flight, then
+ * unpacked the same way and handed to the listener in input order.
+ */
+public class InboundMessageIngestor {
+
+    public static final String RECORD_TYPE = "SSIMessage";
+    public static final int DEFAULT_MAX_INDEXED_IDS = 10000;
+
+    private static final int MAX_CONCURRENT_WRITES = 16;
+    private static final int MAX_CONCURRENT_UNPACKS = 8;
+    private static final int INDEX_PAGE_SIZE = 100;
+    private static final String INDEX_SEARCH_OPTIONS =
+            "{\"retrieveType\":false,\"retrieveValue\":false,\"retrieveTags\":false,\"retrieveTotalCount\":false}";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final Map<String, Set<String>> indexes = new ConcurrentHashMap<>();
+    private final int maxIndexedIds;
+
+    public InboundMessageIngestor() {
+        this(DEFAULT_MAX_INDEXED_IDS);
+    }
+
+    public InboundMessageIngestor(int maxIndexedIds) {
+        this.maxIndexedIds = maxIndexedIds;
+    }
+
+    /**
+     * Ingests {@code messages}, a JSON array of {@code {id, message}} objects as the mediator
+     * sends them, and resolves to {@code {received, accepted, duplicates, failed: [{id, code, error}]}}.
+     * Messages that fail to unpack stay stored, so the JS processing loop reports them as before.
+     */
+    public JSONObject ingest(String walletId, Wallet wallet, JSONArray messages, Listener listener) throws Exception {
+        Set<String> index = index(walletId, wallet);
+        List<Inbound> fresh = new ArrayList<>(messages.length());
+        Set<String> batchIds = new LinkedHashSet<>();
+        int duplicates = 0;
+        for (int i = 0; i < messages.length(); i++) {
+            JSONObject item = messages.getJSONObject(i);
+            String id = item.getString("id");
+            if (!batchIds.add(id) || index.contains(id)) {
+                duplicates++;
+                continue;
+            }
+            Object message = item.get("message");
+            fresh.add(new Inbound(id, message instanceof String ? (String) message : message.toString()));
+        }
+
+        JSONArray failed = new JSONArray();
+        Semaphore writes = new Semaphore(MAX_CONCURRENT_WRITES);
+        List<CompletableFuture<Void>> adds = new ArrayList<>(fresh.size());
+        for (Inbound inbound : fresh) {
+            writes.acquire();
+            adds.add(track(writes, () -> WalletRecord.add(wallet, RECORD_TYPE, inbound.id, inbound.value, inbound.tags())));
+        }
+        List<Inbound> stored = new ArrayList<>(fresh.size());
+        for (int i = 0; i < fresh.size(); i++) {
+            Inbound inbound = fresh.get(i);
+            try {
+                adds.get(i).get();
+                stored.add(inbound);
+                index.add(inbound.id);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof WalletItemAlreadyExistsException) {
+                    duplicates++;
+                    index.add(inbound.id);
+                } else {
+                    failed.put(new JSONObject()
+                            .put("id", inbound.id)
+                            .put("code", Metrics.errorCode(e))
+                            .put("error", String.valueOf(e.getCause().getMessage())));
+                }
+            }
+        }
+
+        Semaphore unpacks = new Semaphore(MAX_CONCURRENT_UNPACKS);
+        List<CompletableFuture<byte[]>> unpacked = new ArrayList<>(stored.size());
+        for (Inbound inbound : stored) {
+            unpacks.acquire();
+            unpacked.add(track(unpacks, () -> Crypto.unpackMessage(wallet, inbound.jwe().getBytes(UTF_8))));
+        }
+        for (int i = 0; i < stored.size(); i++) {
+            try {
+                listener.onMessage(stored.get(i).id, new String(unpacked.get(i).get(), UTF_8), null);
+            } catch (ExecutionException e) {
+                listener.onMessage(stored.get(i).id, null, e);
+            }
+        }
+        return new JSONObject()
+                .put("received", messages.length())
+                .put("accepted", stored.size())
+                .put("duplicates", duplicates)
+                .put("failed", failed);
+    }
+
+    /** Drops the index of a wallet that is being closed or deleted. */
+    public void forget(String walletId) {
+        indexes.remove(walletId);
+    }
+
+    private Set<String> index(String walletId, Wallet wallet) throws Exception {
+        Set<String> index = indexes.get(walletId);
+        if (index != null) {
+            return index;
+        }
+        index = newIndex();
+        WalletSearch search = WalletSearch.open(wallet, RECORD_TYPE, "{}", INDEX_SEARCH_OPTIONS).get();
+        try {
+            while (true) {
+                JSONArray records = new JSONObject(WalletSearch.searchFetchNextRecords(wallet, search, INDEX_PAGE_SIZE).get())
+                        .optJSONArray("records");
+                if (records == null || records.length() == 0) {
+                    break;
+                }
+                for (int i = 0; i < records.length(); i++) {
+                    index.add(records.getJSONObject(i).getString("id"));
+                }
+                if (records.length() < INDEX_PAGE_SIZE) {
+                    break;
+                }
+            }
+        } finally {
+            WalletSearch.closeSearch(search).get();
+        }
+        indexes.put(walletId, index);
+        return index;
+    }
+
+    private Set<String> newIndex() {
+        return Collections.synchronizedSet(Collections.newSetFromMap(new LinkedHashMap<String, Boolean>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > maxIndexedIds;
+            }
+        }));
+    }
+
+    private static <T> CompletableFuture<T> track(Semaphore inFlight, Call<T> call) {
+        CompletableFuture<T> future;
+        try {
+            future = call.start();
+        } catch (Exception e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        future.whenComplete((result, error) -> inFlight.release());
+        return future;
+    }
+
+    private interface Call<T> {
+        CompletableFuture<T> start() throws Exception;
+    }
+
+    private static class Inbound {
+        final String id;
+        final String value;
+
+        Inbound(String id, String value) {
+            this.id = id;
+            this.value = value;
+        }
+
+        /** The same tags the JS socket listener stores, so its processing queries keep matching. */
+        String tags() throws Exception {
+            return new JSONObject()
+                    .put("messageId", id)
+                    .put("autoProcessed", "true")
+                    .put("isProcessed", "false")
+                    .put("message", value)
+                    .toString();
+        }
+
+        /** The packed message sits under "msg" in what the mediator delivers. */
+        String jwe() throws Exception {
+            Object jwe = new JSONObject(value).get("msg");
+            return jwe instanceof String ? (String) jwe : jwe.toString();
+        }
+    }
+
+    public interface Listener {
+        /** Called once per stored message with its unpacked JSON, or with the error that stopped it. */
+        void onMessage(String id, String unpacked, Exception error);
+    }
+}
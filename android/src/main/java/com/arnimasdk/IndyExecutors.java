@@ -0,0 +1,152 @@
+/*
+  Copyright AyanWorks Technology Solutions Pvt. Ltd. All Rights Reserved.
+  SPDX-License-Identifier: Apache-2.0
+*/
+package com.arnimasdk;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded executors the module runs its Indy work on, so that a slow ledger read does not
+ * hold up wallet or crypto calls. Each pool has a bounded queue; once it is full new work is
+ * rejected with {@link #BUSY_CODE} rather than run on the submitting thread, which is usually
+ * the React Native bridge thread and must never block on libindy.
+ */
+public class IndyExecutors {
+
+    /** Error code a promise is rejected with when the executor its work needs is saturated. */
+    public static final String BUSY_CODE = "BUSY";
+
+    private static final int QUEUE_CAPACITY = 256;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final ThreadPoolExecutor anoncreds;
+    private final ThreadPoolExecutor wallet;
+    private final ThreadPoolExecutor ledger;
+
+    public IndyExecutors() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        this.anoncreds = newExecutor("arnima-anoncreds", Math.max(2, cores));
+        this.wallet = newExecutor("arnima-wallet", 2);
+        this.ledger = newExecutor("arnima-ledger", 4);
+    }
+
+    /** CPU-heavy anoncreds work: credential requests, proof creation and verification. */
+    public Executor anoncreds() {
+        return anoncreds;
+    }
+
+    /** Wallet I/O: records, keys, pack/unpack and import/export. */
+    public Executor wallet() {
+        return wallet;
+    }
+
+    /** Ledger network calls and other blocking network I/O. */
+    public Executor ledger() {
+        return ledger;
+    }
+
+    public void shutdown() {
+        anoncreds.shutdownNow();
+        wallet.shutdownNow();
+        ledger.shutdownNow();
+    }
+
+    /** Runs {@code task} on {@code executor} under the span that is current on the calling thread. */
+    public static <T> CompletableFuture<T> supply(Executor executor, Task<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Tracer.Span span = Tracer.current();
+        try {
+            executor.execute(() -> {
+                Tracer.Span previous = Tracer.activate(span);
+                try {
+                    future.complete(task.call());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    Tracer.restore(previous);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public interface Task<T> {
+        T call() throws Exception;
+    }
+
+    /**
+     * Hands the tasks of one batch to an executor with at most {@code maxInFlight} of them queued
+     * or running, so a large batch waits for its own earlier tasks instead of filling the queue
+     * and failing partway with {@link #BUSY_CODE}. Submitting never blocks the caller.
+     */
+    public static class Throttle {
+        private final Executor executor;
+        private final Semaphore inFlight;
+        private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+
+        public Throttle(Executor executor, int maxInFlight) {
+            this.executor = executor;
+            this.inFlight = new Semaphore(maxInFlight);
+        }
+
+        public <T> CompletableFuture<T> supply(Task<T> task) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            Tracer.Span span = Tracer.current();
+            waiting.add(() -> {
+                Tracer.Span previous = Tracer.activate(span);
+                try {
+                    IndyExecutors.supply(executor, task).whenComplete((result, error) -> {
+                        inFlight.release();
+                        if (error != null) {
+                            future.completeExceptionally(error);
+                        } else {
+                            future.complete(result);
+                        }
+                        submitWaiting();
+                    });
+                } finally {
+                    Tracer.restore(previous);
+                }
+            });
+            submitWaiting();
+            return future;
+        }
+
+        private void submitWaiting() {
+            while (!waiting.isEmpty() && inFlight.tryAcquire()) {
+                Runnable next = waiting.poll();
+                if (next == null) {
+                    inFlight.release();
+                } else {
+                    next.run();
+                }
+            }
+        }
+    }
+
+    private static ThreadPoolExecutor newExecutor(String name, int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+                    Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, (runnable, rejectedBy) -> {
+                    throw new RejectedExecutionException(name + " executor is busy");
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
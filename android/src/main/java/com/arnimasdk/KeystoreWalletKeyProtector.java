@@ -0,0 +1,87 @@
+/*
+  Copyright AyanWorks Technology Solutions Pvt. Ltd. All Rights Reserved.
+  SPDX-License-Identifier: Apache-2.0
+*/
+package com.arnimasdk;
+
+import android.os.Build;
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * Wraps wallet keys with AES-GCM under a per-wallet key held in the Android Keystore. The
+ * wrapped form is the 12 byte IV followed by the ciphertext and tag.
+ */
+public class KeystoreWalletKeyProtector implements WalletKeyProtector {
+
+    private static final String KEYSTORE = "AndroidKeyStore";
+    private static final String ALIAS_PREFIX = "arnima-wallet-key:";
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+
+    @Override
+    public byte[] wrap(String walletId, byte[] key) throws Exception {
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.ENCRYPT_MODE, getOrCreateKey(walletId));
+        byte[] iv = cipher.getIV();
+        byte[] ciphertext = cipher.doFinal(key);
+        byte[] wrapped = Arrays.copyOf(iv, iv.length + ciphertext.length);
+        System.arraycopy(ciphertext, 0, wrapped, iv.length, ciphertext.length);
+        return wrapped;
+    }
+
+    @Override
+    public byte[] unwrap(String walletId, byte[] wrappedKey) throws Exception {
+        KeyStore keyStore = loadKeyStore();
+        SecretKey secretKey = (SecretKey) keyStore.getKey(ALIAS_PREFIX + walletId, null);
+        if (secretKey == null) {
+            throw new GeneralSecurityException("No keystore key for wallet " + walletId);
+        }
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.DECRYPT_MODE, secretKey, new GCMParameterSpec(TAG_BITS, wrappedKey, 0, IV_BYTES));
+        return cipher.doFinal(wrappedKey, IV_BYTES, wrappedKey.length - IV_BYTES);
+    }
+
+    @Override
+    public void delete(String walletId) throws Exception {
+        KeyStore keyStore = loadKeyStore();
+        if (keyStore.containsAlias(ALIAS_PREFIX + walletId)) {
+            keyStore.deleteEntry(ALIAS_PREFIX + walletId);
+        }
+    }
+
+    private SecretKey getOrCreateKey(String walletId) throws Exception {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            throw new GeneralSecurityException("Android Keystore AES keys require API level 23");
+        }
+        KeyStore keyStore = loadKeyStore();
+        SecretKey existing = (SecretKey) keyStore.getKey(ALIAS_PREFIX + walletId, null);
+        if (existing != null) {
+            return existing;
+        }
+        KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, KEYSTORE);
+        generator.init(new KeyGenParameterSpec.Builder(ALIAS_PREFIX + walletId,
+                KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                .setKeySize(256)
+                .build());
+        return generator.generateKey();
+    }
+
+    private static KeyStore loadKeyStore() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance(KEYSTORE);
+        keyStore.load(null);
+        return keyStore;
+    }
+}
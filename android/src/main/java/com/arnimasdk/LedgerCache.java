@@ -0,0 +1,210 @@
+/*
+  Copyright AyanWorks Technology Solutions Pvt. Ltd. All Rights Reserved.
+  SPDX-License-Identifier: Apache-2.0
+*/
+package com.arnimasdk;
+
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache for ledger objects that never change once written (schemas, credential definitions
+ * and revocation registry definitions). Lookups go to an in-memory LRU first and then to
+ * one file per object on disk, keyed by pool name and ledger object id.
+ */
+public class LedgerCache {
+
+    public static final int DEFAULT_MAX_MEMORY_ENTRIES = 256;
+    public static final long DEFAULT_MAX_DISK_BYTES = 16L * 1024 * 1024;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File directory;
+    private final LinkedHashMap<String, String> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private int maxMemoryEntries = DEFAULT_MAX_MEMORY_ENTRIES;
+    private long maxDiskBytes = DEFAULT_MAX_DISK_BYTES;
+    private long diskBytes = -1;
+
+    public LedgerCache(File directory) {
+        this.directory = directory;
+    }
+
+    public String get(String poolName, String objectId) {
+        String key = key(poolName, objectId);
+        synchronized (this) {
+            String objectJson = memory.get(key);
+            if (objectJson != null) {
+                memoryHits.incrementAndGet();
+                return objectJson;
+            }
+        }
+        File file = new File(directory, key + ".json");
+        if (file.isFile()) {
+            try {
+                String objectJson = new String(readFile(file), UTF_8);
+                file.setLastModified(System.currentTimeMillis());
+                synchronized (this) {
+                    putInMemory(key, objectJson);
+                }
+                diskHits.incrementAndGet();
+                return objectJson;
+            } catch (IOException e) {
+                file.delete();
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void put(String poolName, String objectId, String objectJson) {
+        String key = key(poolName, objectId);
+        byte[] data = objectJson.getBytes(UTF_8);
+        synchronized (this) {
+            putInMemory(key, objectJson);
+            if (maxDiskBytes <= 0 || (!directory.isDirectory() && !directory.mkdirs())) {
+                return;
+            }
+            File file = new File(directory, key + ".json");
+            File tempFile = new File(directory, key + ".tmp");
+            try {
+                long previousSize = file.isFile() ? file.length() : 0;
+                OutputStream output = new FileOutputStream(tempFile);
+                try {
+                    output.write(data);
+                } finally {
+                    output.close();
+                }
+                if (!tempFile.renameTo(file)) {
+                    tempFile.delete();
+                    return;
+                }
+                diskBytes = currentDiskBytes() - previousSize + data.length;
+                trimDisk();
+            } catch (IOException e) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    public synchronized void setLimits(int maxMemoryEntries, long maxDiskBytes) {
+        this.maxMemoryEntries = Math.max(0, maxMemoryEntries);
+        this.maxDiskBytes = Math.max(0, maxDiskBytes);
+        trimMemory();
+        trimDisk();
+    }
+
+    public synchronized void clear() {
+        memory.clear();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        diskBytes = 0;
+        memoryHits.set(0);
+        diskHits.set(0);
+        misses.set(0);
+    }
+
+    public synchronized JSONObject getStats() throws Exception {
+        return new JSONObject()
+                .put("memoryHits", memoryHits.get())
+                .put("diskHits", diskHits.get())
+                .put("misses", misses.get())
+                .put("memoryEntries", memory.size())
+                .put("maxMemoryEntries", maxMemoryEntries)
+                .put("diskBytes", currentDiskBytes())
+                .put("maxDiskBytes", maxDiskBytes);
+    }
+
+    private void putInMemory(String key, String objectJson) {
+        memory.put(key, objectJson);
+        trimMemory();
+    }
+
+    private void trimMemory() {
+        while (memory.size() > maxMemoryEntries) {
+            String eldest = memory.keySet().iterator().next();
+            memory.remove(eldest);
+        }
+    }
+
+    private void trimDisk() {
+        if (currentDiskBytes() <= maxDiskBytes) {
+            return;
+        }
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, (left, right) -> Long.compare(left.lastModified(), right.lastModified()));
+        for (File file : files) {
+            if (diskBytes <= maxDiskBytes) {
+                break;
+            }
+            long size = file.length();
+            if (file.delete()) {
+                diskBytes -= size;
+            }
+        }
+    }
+
+    private long currentDiskBytes() {
+        if (diskBytes < 0) {
+            long total = 0;
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    total += file.length();
+                }
+            }
+            diskBytes = total;
+        }
+        return diskBytes;
+    }
+
+    private static String key(String poolName, String objectId) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((poolName + "\n" + objectId).getBytes(UTF_8));
+            StringBuilder builder = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                builder.append(String.format("%02x", b));
+            }
+            return builder.toString();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        InputStream input = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = input.read(buffer)) != -1) {
+                output.write(buffer, 0, count);
+            }
+            return output.toByteArray();
+        } finally {
+            input.close();
+        }
+    }
+}
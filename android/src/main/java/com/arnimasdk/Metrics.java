@@ -0,0 +1,239 @@
+/*
+  Copyright AyanWorks Technology Solutions Pvt. Ltd. All Rights Reserved.
+  SPDX-License-Identifier: Apache-2.0
+*/
+package com.arnimasdk;
+
+import org.hyperledger.indy.sdk.IndyException;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histograms, call and error counts and byte counters for bridge methods and internal
+ * stages. Disabled by default: {@link #start()} then returns 0 and {@link #record} returns
+ * straight away, so an instrumented call costs one volatile read.
+ */
+public class Metrics {
+
+    /** Upper bounds of the latency buckets in milliseconds; the last bucket is unbounded. */
+    private static final long[] BUCKET_BOUNDS_MS = {1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    private final Map<String, Stat> stats = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final Listener listener;
+    private volatile boolean enabled;
+    private volatile long since = System.currentTimeMillis();
+    private ScheduledFuture<?> report;
+
+    public Metrics(Listener listener) {
+        this.listener = listener;
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "arnima-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        this.scheduler = executor;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns recording on or off. With a positive {@code reportIntervalMs} a snapshot is passed
+     * to the listener at that interval while recording is on.
+     */
+    public synchronized void setEnabled(boolean enabled, long reportIntervalMs) {
+        this.enabled = enabled;
+        if (report != null) {
+            report.cancel(false);
+            report = null;
+        }
+        if (enabled && reportIntervalMs > 0) {
+            report = scheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    listener.onReport(snapshot(false));
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }, reportIntervalMs, reportIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Start time for {@link #record}, or 0 when recording is off. */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /** Records one call of {@code name} that started at {@code startNanos}; a null error code means success. */
+    public void record(String name, long startNanos, String errorCode) {
+        if (startNanos == 0) {
+            return;
+        }
+        stat(name).record(System.nanoTime() - startNanos, errorCode);
+    }
+
+    public void addBytes(String name, long bytes) {
+        if (enabled && bytes > 0) {
+            stat(name).bytes.addAndGet(bytes);
+        }
+    }
+
+    /**
+     * The Indy error code of a failure, {@link IndyExecutors#BUSY_CODE} when an executor
+     * rejected the work, {@link WalletSearchRegistry#CLOSED_CODE} for a closed search,
+     * {@link PoolManager#IN_USE_CODE} for a config change on a busy pool, or "0" for anything else.
+     */
+    public static String errorCode(Throwable error) {
+        while ((error instanceof ExecutionException || error instanceof CompletionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof RejectedExecutionException) {
+            return IndyExecutors.BUSY_CODE;
+        }
+        if (error instanceof WalletSearchRegistry.ClosedException) {
+            return WalletSearchRegistry.CLOSED_CODE;
+        }
+        if (error instanceof PoolManager.InUseException) {
+            return PoolManager.IN_USE_CODE;
+        }
+        return error instanceof IndyException ? String.valueOf(((IndyException) error).getSdkErrorCode()) : "0";
+    }
+
+    public JSONObject snapshot(boolean reset) throws Exception {
+        long now = System.currentTimeMillis();
+        JSONObject methods = new JSONObject();
+        for (Map.Entry<String, Stat> entry : stats.entrySet()) {
+            methods.put(entry.getKey(), entry.getValue().toJson(now - since));
+        }
+        JSONObject snapshot = new JSONObject()
+                .put("enabled", enabled)
+                .put("since", since)
+                .put("timestamp", now)
+                .put("metrics", methods);
+        if (reset) {
+            stats.clear();
+            since = now;
+        }
+        return snapshot;
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private Stat stat(String name) {
+        Stat stat = stats.get(name);
+        if (stat == null) {
+            Stat created = new Stat();
+            stat = stats.putIfAbsent(name, created);
+            if (stat == null) {
+                stat = created;
+            }
+        }
+        return stat;
+    }
+
+    private static class Stat {
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong totalNanos = new AtomicLong();
+        final AtomicLong maxNanos = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong();
+        final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS_MS.length + 1);
+        final Map<String, AtomicLong> errorCodes = new ConcurrentHashMap<>();
+
+        void record(long nanos, String errorCode) {
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            long max;
+            while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+                // Retry until this sample is stored or a larger one won.
+            }
+            buckets.incrementAndGet(bucket(nanos));
+            if (errorCode != null) {
+                errors.incrementAndGet();
+                AtomicLong codeCount = errorCodes.get(errorCode);
+                if (codeCount == null) {
+                    AtomicLong created = new AtomicLong();
+                    codeCount = errorCodes.putIfAbsent(errorCode, created);
+                    if (codeCount == null) {
+                        codeCount = created;
+                    }
+                }
+                codeCount.incrementAndGet();
+            }
+        }
+
+        JSONObject toJson(long windowMs) throws Exception {
+            long calls = count.get();
+            JSONArray histogram = new JSONArray();
+            long[] counts = new long[buckets.length()];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets.get(i);
+                histogram.put(new JSONObject()
+                        .put("ltMs", i < BUCKET_BOUNDS_MS.length ? BUCKET_BOUNDS_MS[i] : -1)
+                        .put("count", counts[i]));
+            }
+            JSONObject codes = new JSONObject();
+            for (Map.Entry<String, AtomicLong> code : errorCodes.entrySet()) {
+                codes.put(code.getKey(), code.getValue().get());
+            }
+            return new JSONObject()
+                    .put("count", calls)
+                    .put("errors", errors.get())
+                    .put("errorCodes", codes)
+                    .put("bytes", bytes.get())
+                    .put("perSecond", windowMs > 0 ? calls * 1000.0 / windowMs : 0)
+                    .put("meanMs", calls > 0 ? totalNanos.get() / 1e6 / calls : 0)
+                    .put("maxMs", maxNanos.get() / 1e6)
+                    .put("p50Ms", percentile(counts, calls, 0.50))
+                    .put("p95Ms", percentile(counts, calls, 0.95))
+                    .put("p99Ms", percentile(counts, calls, 0.99))
+                    .put("histogram", histogram);
+        }
+
+        /** Upper bound of the bucket holding the percentile; the max for the unbounded bucket. */
+        private double percentile(long[] counts, long calls, double quantile) {
+            if (calls == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(calls * quantile);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return i < BUCKET_BOUNDS_MS.length ? BUCKET_BOUNDS_MS[i] : maxNanos.get() / 1e6;
+                }
+            }
+            return maxNanos.get() / 1e6;
+        }
+
+        private static int bucket(long nanos) {
+            long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+            for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+                if (millis < BUCKET_BOUNDS_MS[i]) {
+                    return i;
+                }
+            }
+            return BUCKET_BOUNDS_MS.length;
+        }
+    }
+
+    public interface Listener {
+        void onReport(JSONObject snapshot);
+    }
+}
@@ -0,0 +1,278 @@
+/*
+  Copyright AyanWorks Technology Solutions Pvt. Ltd. All Rights Reserved.
+  SPDX-License-Identifier: Apache-2.0
+*/
+package com.arnimasdk;
+
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Posts packed DIDComm messages to agent endpoints over HTTP. Each endpoint origin has its own
+ * limit on concurrent requests, and messages beyond it wait in that origin's queue rather than
+ * on a transport thread, so a slow agent does not hold up the others. Every response body is
+ * read to the end and its stream closed
+ * without disconnecting, so HttpURLConnection keeps the connection alive and reuses it for the
+ * next message to that origin. Only a request whose body was not fully sent, e.g. because
+ * the connection was refused, is retried with exponential backoff, as is a 429 or 503 that
+ * names a Retry-After; anything else may already have been accepted by the agent and is never
+ * sent twice. Like the JS fetch path, every HTTP status resolves; only a failed connection
+ * rejects. Latency, errors and bytes sent are recorded per origin.
+ */
+public class OutboundTransport {
+
+    public static final int DEFAULT_CONNECT_TIMEOUT_MS = 10000;
+    public static final int DEFAULT_READ_TIMEOUT_MS = 30000;
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ENDPOINT = 4;
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_RETRY_BACKOFF_MS = 500;
+    public static final long MAX_RETRY_AFTER_MS = 30000;
+
+    private static final int MAX_THREADS = 16;
+    private static final String CONTENT_TYPE = "application/ssi-agent-wire";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final Metrics metrics;
+    private final Tracer tracer;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private volatile int connectTimeoutMs = DEFAULT_CONNECT_TIMEOUT_MS;
+    private volatile int readTimeoutMs = DEFAULT_READ_TIMEOUT_MS;
+    private volatile int maxConnectionsPerEndpoint = DEFAULT_MAX_CONNECTIONS_PER_ENDPOINT;
+    private volatile int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private volatile long retryBackoffMs = DEFAULT_RETRY_BACKOFF_MS;
+
+    public OutboundTransport(Metrics metrics, Tracer tracer) {
+        this.metrics = metrics;
+        this.tracer = tracer;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "arnima-outbound-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Applies {@code connectTimeoutMs}, {@code readTimeoutMs}, {@code maxConnectionsPerEndpoint},
+     * {@code maxAttempts} and {@code retryBackoffMs} from {@code config}; missing keys keep their
+     * current value. A new connection limit applies to endpoints first used after the change.
+     */
+    public void configure(JSONObject config) {
+        connectTimeoutMs = config.optInt("connectTimeoutMs", connectTimeoutMs);
+        readTimeoutMs = config.optInt("readTimeoutMs", readTimeoutMs);
+        int maxConnections = config.optInt("maxConnectionsPerEndpoint", maxConnectionsPerEndpoint);
+        if (maxConnections != maxConnectionsPerEndpoint) {
+            maxConnectionsPerEndpoint = Math.max(1, maxConnections);
+            endpoints.clear();
+        }
+        maxAttempts = Math.max(1, config.optInt("maxAttempts", maxAttempts));
+        retryBackoffMs = Math.max(0, config.optLong("retryBackoffMs", retryBackoffMs));
+    }
+
+    /** Posts {@code body} to {@code endpoint} on the transport's own threads. */
+    public CompletableFuture<Response> send(String endpoint, byte[] body) {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        URL url;
+        try {
+            url = new URL(endpoint);
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        String origin = url.getProtocol() + "://" + url.getAuthority();
+        Endpoint target = endpoint(origin);
+        Tracer.Span parent = Tracer.current();
+        target.waiting.add(() -> {
+            Tracer.Span previous = Tracer.activate(parent);
+            try {
+                future.complete(post(url, origin, body));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                Tracer.restore(previous);
+                target.permits.release();
+                dispatch(target);
+            }
+        });
+        dispatch(target);
+        return future;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /** Starts queued sends of {@code endpoint} while it has free permits. */
+    private void dispatch(Endpoint endpoint) {
+        while (!endpoint.waiting.isEmpty() && endpoint.permits.tryAcquire()) {
+            Runnable task = endpoint.waiting.poll();
+            if (task == null) {
+                endpoint.permits.release();
+                return;
+            }
+            executor.execute(task);
+        }
+    }
+
+    private Response post(URL url, String origin, byte[] body) throws Exception {
+        long started = metrics.start();
+        Tracer.Span span = tracer.begin("outbound.send").put("endpoint", origin).put("bytes", body.length);
+        try {
+            for (int attempt = 1; ; attempt++) {
+                span.put("attempts", attempt);
+                Response response;
+                try {
+                    response = postOnce(url, body);
+                } catch (UnsentException e) {
+                    if (attempt >= maxAttempts) {
+                        throw e.getCause();
+                    }
+                    Thread.sleep(retryBackoffMs << (attempt - 1));
+                    continue;
+                }
+                long retryAfterMs = retryAfterMs(response);
+                if (retryAfterMs >= 0 && attempt < maxAttempts) {
+                    Thread.sleep(retryAfterMs);
+                    continue;
+                }
+                span.put("status", response.status);
+                metrics.record("outbound." + origin, started, response.status >= 400 ? "HTTP_" + response.status : null);
+                metrics.addBytes("outbound." + origin, body.length);
+                span.end();
+                return response;
+            }
+        } catch (Exception e) {
+            metrics.record("outbound." + origin, started, Metrics.errorCode(e));
+            span.end(e);
+            throw e;
+        }
+    }
+
+    private Response postOnce(URL url, byte[] body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(connectTimeoutMs);
+        connection.setReadTimeout(readTimeoutMs);
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", CONTENT_TYPE);
+        connection.setRequestProperty("Accept", "application/json");
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(body.length);
+        try {
+            OutputStream output = connection.getOutputStream();
+            try {
+                output.write(body);
+            } finally {
+                output.close();
+            }
+        } catch (IOException e) {
+            connection.disconnect();
+            throw new UnsentException(e);
+        }
+        int status = connection.getResponseCode();
+        long retryAfterMs = -1;
+        String retryAfter = connection.getHeaderField("Retry-After");
+        if (retryAfter != null) {
+            try {
+                retryAfterMs = Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+            } catch (NumberFormatException e) {
+                long date = connection.getHeaderFieldDate("Retry-After", -1);
+                retryAfterMs = date < 0 ? -1 : Math.max(0, date - System.currentTimeMillis());
+            }
+        }
+        InputStream input = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        // Draining and closing the body, not disconnecting, hands the connection back for reuse.
+        String responseBody = input == null ? "" : new String(readFully(input), UTF_8);
+        return new Response(status, responseBody, retryAfterMs);
+    }
+
+    private Endpoint endpoint(String origin) {
+        Endpoint endpoint = endpoints.get(origin);
+        if (endpoint == null) {
+            Endpoint created = new Endpoint(maxConnectionsPerEndpoint);
+            endpoint = endpoints.putIfAbsent(origin, created);
+            if (endpoint == null) {
+                endpoint = created;
+            }
+        }
+        return endpoint;
+    }
+
+    /** How long to wait before sending {@code response}'s request again, or -1 to not retry it. */
+    private static long retryAfterMs(Response response) {
+        if ((response.status == 429 || response.status == 503) && response.retryAfterMs <= MAX_RETRY_AFTER_MS) {
+            return response.retryAfterMs;
+        }
+        return -1;
+    }
+
+    private static byte[] readFully(InputStream input) throws IOException {
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = input.read(buffer)) != -1) {
+                output.write(buffer, 0, count);
+            }
+            return output.toByteArray();
+        } finally {
+            input.close();
+        }
+    }
+
+    /** A request that failed before its body was fully written, so the agent cannot have accepted it. */
+    private static class UnsentException extends IOException {
+        UnsentException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+
+    private static class Endpoint {
+        final Semaphore permits;
+        final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+
+        Endpoint(int maxConnections) {
+            this.permits = new Semaphore(maxConnections);
+        }
+    }
+
+    public static class Response {
+        public final int status;
+        public final String body;
+        final long retryAfterMs;
+
+        Response(int status, String body, long retryAfterMs) {
+            this.status = status;
+            this.body = body;
+            this.retryAfterMs = retryAfterMs;
+        }
+
+        public JSONObject toJson() throws Exception {
+            return new JSONObject().put("status", status).put("body", body);
+        }
+    }
+}
@@ -0,0 +1,374 @@
+/*
+  Copyright AyanWorks Technology Solutions Pvt. Ltd. All Rights Reserved.
+  SPDX-License-Identifier: Apache-2.0
+*/
+package com.arnimasdk;
+
+import org.hyperledger.indy.sdk.pool.Pool;
+import org.hyperledger.indy.sdk.pool.PoolJSONParameters;
+import org.hyperledger.indy.sdk.pool.PoolLedgerTerminatedException;
+import org.hyperledger.indy.sdk.pool.PoolLedgerTimeoutException;
+import org.json.JSONArray;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps one open {@link Pool} handle per pool name and shares it between callers.
+ * Handles are reference counted, refreshed when they have not been refreshed for a while
+ * or after a ledger timeout, and closed once nobody has used them for the idle timeout.
+ * Pool configs are only recreated when their genesis changes, and a pool can be warmed up in
+ * the background with callers waiting on its readiness instead of opening it themselves.
+ */
+public class PoolManager {
+
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(5);
+    public static final long DEFAULT_REFRESH_INTERVAL_MS = TimeUnit.MINUTES.toMillis(10);
+    /** Rejection code for a config change on a pool that ledger calls are still using. */
+    public static final String IN_USE_CODE = "POOL_IN_USE";
+
+    private final Map<String, PoolEntry> pools = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Void>> warmUps = new ConcurrentHashMap<>();
+    private final GenesisStore genesisStore;
+    private final ScheduledExecutorService scheduler;
+    private final long idleTimeoutMs;
+    private final long refreshIntervalMs;
+    private final Metrics metrics;
+    private final Tracer tracer;
+    private final Object protocolVersionLock = new Object();
+    private volatile boolean protocolVersionSet;
+
+    public PoolManager(GenesisStore genesisStore, Metrics metrics, Tracer tracer) {
+        this(genesisStore, metrics, tracer, DEFAULT_IDLE_TIMEOUT_MS, DEFAULT_REFRESH_INTERVAL_MS);
+    }
+
+    public PoolManager(GenesisStore genesisStore, Metrics metrics, Tracer tracer, long idleTimeoutMs, long refreshIntervalMs) {
+        this.genesisStore = genesisStore;
+        this.metrics = metrics;
+        this.tracer = tracer;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.refreshIntervalMs = refreshIntervalMs;
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "arnima-pool-manager");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        this.scheduler = executor;
+    }
+
+    /**
+     * Creates the config of {@code poolName} from {@code genesis}, unless it already exists with
+     * the same genesis. A config with a different genesis is closed and replaced, or rejected
+     * with {@link InUseException} while ledger calls hold the pool. Returns false when the
+     * existing config was reused.
+     */
+    public boolean createConfig(String poolName, String genesis) throws Exception {
+        setProtocolVersion();
+        String hash = GenesisStore.hash(genesis);
+        boolean exists = configExists(poolName);
+        if (exists && hash.equals(genesisStore.configuredHash(poolName))) {
+            return false;
+        }
+        File genesisFile = genesisStore.store(genesis, hash);
+        PoolEntry entry = pools.computeIfAbsent(poolName, PoolEntry::new);
+        synchronized (entry) {
+            if (exists) {
+                closeIdle(entry);
+                Pool.deletePoolLedgerConfig(poolName).get();
+            }
+            genesisStore.forget(poolName);
+            Pool.createPoolLedgerConfig(poolName,
+                    new PoolJSONParameters.CreatePoolLedgerConfigJSONParameter(genesisFile.getAbsolutePath()).toJson()).get();
+            genesisStore.setConfiguredHash(poolName, hash);
+        }
+        return true;
+    }
+
+    /**
+     * Closes {@code poolName} and deletes its config; a pool without a config is left alone.
+     * Rejected with {@link InUseException} while ledger calls hold the pool.
+     */
+    public void deleteConfig(String poolName) throws Exception {
+        PoolEntry entry = pools.computeIfAbsent(poolName, PoolEntry::new);
+        synchronized (entry) {
+            closeIdle(entry);
+            genesisStore.forget(poolName);
+            if (configExists(poolName)) {
+                Pool.deletePoolLedgerConfig(poolName).get();
+            }
+        }
+    }
+
+    /**
+     * Opens {@code poolName} on {@code executor}, or refreshes it when it is already open, and
+     * returns a future that completes once the pool is ready. A warm-up already in flight or
+     * done is shared; a failed one is retried. The pool then stays open for the idle timeout.
+     */
+    public synchronized CompletableFuture<Void> warmUp(String poolName, Executor executor) {
+        CompletableFuture<Void> ready = warmUps.get(poolName);
+        if (ready != null && !ready.isCompletedExceptionally()) {
+            return ready;
+        }
+        CompletableFuture<Void> warmUp = IndyExecutors.supply(executor, () -> {
+            long started = metrics.start();
+            Tracer.Span span = tracer.begin("pool.warmUp").put("poolName", poolName);
+            try {
+                PoolEntry entry = pools.get(poolName);
+                if (entry != null) {
+                    synchronized (entry) {
+                        entry.stale = entry.pool != null;
+                    }
+                }
+                acquire(poolName);
+                release(poolName);
+                metrics.record("stage.poolWarmUp", started, null);
+                span.end();
+                return null;
+            } catch (Exception e) {
+                metrics.record("stage.poolWarmUp", started, Metrics.errorCode(e));
+                span.end(e);
+                throw e;
+            }
+        });
+        warmUps.put(poolName, warmUp);
+        return warmUp;
+    }
+
+    /**
+     * Resolves true once {@code poolName} is warm, starting a warm-up if none is running, or
+     * false when {@code timeoutMs} (0 waits indefinitely) passes first.
+     */
+    public CompletableFuture<Boolean> awaitReady(String poolName, Executor executor, long timeoutMs) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        ScheduledFuture<?> timeout = timeoutMs > 0
+                ? scheduler.schedule(() -> result.complete(false), timeoutMs, TimeUnit.MILLISECONDS)
+                : null;
+        warmUp(poolName, executor).whenComplete((ignored, error) -> {
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns the shared handle for {@code poolName}, opening it on first use.
+     * Every successful call must be paired with {@link #release(String)}.
+     */
+    public Pool acquire(String poolName) throws Exception {
+        PoolEntry entry = pools.computeIfAbsent(poolName, PoolEntry::new);
+        synchronized (entry) {
+            entry.cancelIdleClose();
+            long now = System.currentTimeMillis();
+            if (entry.pool == null) {
+                entry.pool = openPoolLedger(poolName);
+                entry.lastRefresh = now;
+                entry.stale = false;
+            } else if (entry.stale || now - entry.lastRefresh > refreshIntervalMs) {
+                refreshOrReopen(entry);
+            }
+            entry.closeRequested = false;
+            entry.refCount++;
+            return entry.pool;
+        }
+    }
+
+    public void release(String poolName) {
+        PoolEntry entry = pools.get(poolName);
+        if (entry == null) {
+            return;
+        }
+        synchronized (entry) {
+            if (entry.refCount > 0) {
+                entry.refCount--;
+            }
+            if (entry.refCount == 0) {
+                if (entry.closeRequested) {
+                    closeEntry(entry);
+                } else {
+                    scheduleIdleClose(entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks the handle as stale when a ledger call failed because the pool timed out or
+     * was terminated, so the next {@link #acquire(String)} refreshes or reconnects it.
+     */
+    public void onRequestFailed(String poolName, Throwable error) {
+        Throwable cause = error instanceof ExecutionException ? error.getCause() : error;
+        if (!(cause instanceof PoolLedgerTimeoutException) && !(cause instanceof PoolLedgerTerminatedException)) {
+            return;
+        }
+        PoolEntry entry = pools.get(poolName);
+        if (entry != null) {
+            synchronized (entry) {
+                entry.stale = true;
+            }
+        }
+    }
+
+    /**
+     * Closes the pool now if nobody is using it, otherwise as soon as the last caller releases it.
+     */
+    public void close(String poolName) {
+        PoolEntry entry = pools.get(poolName);
+        if (entry == null) {
+            return;
+        }
+        synchronized (entry) {
+            if (entry.refCount == 0) {
+                closeEntry(entry);
+            } else {
+                entry.closeRequested = true;
+            }
+        }
+    }
+
+    public void closeAll() {
+        for (PoolEntry entry : pools.values()) {
+            synchronized (entry) {
+                closeEntry(entry);
+                entry.refCount = 0;
+            }
+        }
+        pools.clear();
+    }
+
+    public void shutdown() {
+        closeAll();
+        scheduler.shutdownNow();
+    }
+
+    private void refreshOrReopen(PoolEntry entry) throws Exception {
+        try {
+            entry.pool.refreshPoolLedger().get();
+        } catch (Exception e) {
+            Pool stalePool = entry.pool;
+            entry.pool = openPoolLedger(entry.poolName);
+            closeQuietly(stalePool);
+        }
+        entry.lastRefresh = System.currentTimeMillis();
+        entry.stale = false;
+    }
+
+    /** Sets the ledger protocol version once per process, before the first pool is created or opened. */
+    private void setProtocolVersion() throws Exception {
+        if (protocolVersionSet) {
+            return;
+        }
+        synchronized (protocolVersionLock) {
+            if (!protocolVersionSet) {
+                Pool.setProtocolVersion(ArnimaSdk.PROTOCOL_VERSION).get();
+                protocolVersionSet = true;
+            }
+        }
+    }
+
+    private static boolean configExists(String poolName) throws Exception {
+        JSONArray configs = new JSONArray(Pool.listPools().get());
+        for (int i = 0; i < configs.length(); i++) {
+            if (poolName.equals(configs.getJSONObject(i).optString("pool"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Pool openPoolLedger(String poolName) throws Exception {
+        setProtocolVersion();
+        long started = metrics.start();
+        Tracer.Span span = tracer.begin("pool.open").put("poolName", poolName);
+        try {
+            Pool pool = Pool.openPoolLedger(poolName, "{}").get();
+            metrics.record("stage.openPoolLedger", started, null);
+            span.end();
+            return pool;
+        } catch (Exception e) {
+            metrics.record("stage.openPoolLedger", started, Metrics.errorCode(e));
+            span.end(e);
+            throw e;
+        }
+    }
+
+    private void scheduleIdleClose(PoolEntry entry) {
+        entry.cancelIdleClose();
+        entry.idleClose = scheduler.schedule(() -> {
+            synchronized (entry) {
+                if (entry.refCount == 0) {
+                    closeEntry(entry);
+                }
+            }
+        }, idleTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Closes a pool nobody holds; the caller keeps the entry lock until its config is replaced. */
+    private void closeIdle(PoolEntry entry) {
+        if (entry.refCount > 0) {
+            throw new InUseException("Pool " + entry.poolName + " is in use by " + entry.refCount
+                    + " ledger call(s); its config can be changed once they finish");
+        }
+        closeEntry(entry);
+    }
+
+    private void closeEntry(PoolEntry entry) {
+        entry.cancelIdleClose();
+        warmUps.remove(entry.poolName);
+        if (entry.pool != null) {
+            closeQuietly(entry.pool);
+            entry.pool = null;
+        }
+        entry.closeRequested = false;
+        entry.stale = false;
+    }
+
+    private static void closeQuietly(Pool pool) {
+        try {
+            pool.closePoolLedger().get();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    public static class InUseException extends IllegalStateException {
+        public InUseException(String message) {
+            super(message);
+        }
+    }
+
+    private static class PoolEntry {
+        final String poolName;
+        Pool pool;
+        int refCount;
+        long lastRefresh;
+        boolean stale;
+        boolean closeRequested;
+        ScheduledFuture<?> idleClose;
+
+        PoolEntry(String poolName) {
+            this.poolName = poolName;
+        }
+
+        void cancelIdleClose() {
+            if (idleClose != null) {
+                idleClose.cancel(false);
+                idleClose = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+  Copyright AyanWorks Technology Solutions Pvt. Ltd. All Rights Reserved.
+  SPDX-License-Identifier: Apache-2.0
+*/
+package com.arnimasdk;
+
+import org.hyperledger.indy.sdk.blob_storage.BlobStorageReader;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps open tails readers for the most recently used tails hashes and the revocation states
+ * computed for each (revRegId, credRevId), indexed by the "to" timestamp they were requested
+ * for. A state for an older timestamp can be advanced with only the newer delta instead of
+ * rebuilt from zero. The reader of a tails file the {@link TailsStore} evicts is dropped.
+ */
+public class RevocationStateCache {
+
+    public static final int DEFAULT_MAX_CREDENTIALS = 128;
+    public static final int MAX_STATES_PER_CREDENTIAL = 8;
+    public static final int MAX_READERS = 16;
+
+    private final LinkedHashMap<String, BlobStorageReader> readers = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, TreeMap<Long, State>> states = new LinkedHashMap<>(16, 0.75f, true);
+    private final int maxCredentials;
+    private final Metrics metrics;
+    private final Tracer tracer;
+
+    public RevocationStateCache(Metrics metrics, Tracer tracer) {
+        this(metrics, tracer, DEFAULT_MAX_CREDENTIALS);
+    }
+
+    public RevocationStateCache(Metrics metrics, Tracer tracer, int maxCredentials) {
+        this.metrics = metrics;
+        this.tracer = tracer;
+        this.maxCredentials = maxCredentials;
+    }
+
+    /**
+     * Returns the reader for {@code tailsHash}, opening a blob storage reader on
+     * {@code tailsDirectory} the first time the hash is seen.
+     */
+    public synchronized BlobStorageReader getReader(File tailsDirectory, String tailsHash) throws Exception {
+        BlobStorageReader reader = readers.get(tailsHash);
+        if (reader == null) {
+            String tailsReaderConfig = new JSONObject().put("base_dir", tailsDirectory.getAbsolutePath()).put("uri_pattern", "").toString();
+            long started = metrics.start();
+            Tracer.Span span = tracer.begin("tails.openReader").put("tailsHash", tailsHash);
+            try {
+                reader = BlobStorageReader.openReader("default", tailsReaderConfig).get();
+                metrics.record("stage.openTailsReader", started, null);
+                span.end();
+            } catch (Exception e) {
+                metrics.record("stage.openTailsReader", started, Metrics.errorCode(e));
+                span.end(e);
+                throw e;
+            }
+            readers.put(tailsHash, reader);
+            while (readers.size() > MAX_READERS) {
+                readers.remove(readers.keySet().iterator().next());
+            }
+        }
+        return reader;
+    }
+
+    /**
+     * Drops the reader of a tails file that is gone. libindy has no call to close a blob storage
+     * reader, so dropping it is all that can be done.
+     */
+    public synchronized void forgetReader(String tailsHash) {
+        readers.remove(tailsHash);
+    }
+
+    /** The state computed for exactly this requested timestamp, or null. */
+    public synchronized State get(String revRegId, String credRevId, long requestedTo) {
+        TreeMap<Long, State> credentialStates = states.get(key(revRegId, credRevId));
+        return credentialStates == null ? null : credentialStates.get(requestedTo);
+    }
+
+    /** The most recent state requested for a timestamp at or before {@code requestedTo}, or null. */
+    public synchronized State getLatestBefore(String revRegId, String credRevId, long requestedTo) {
+        TreeMap<Long, State> credentialStates = states.get(key(revRegId, credRevId));
+        if (credentialStates == null) {
+            return null;
+        }
+        Map.Entry<Long, State> entry = credentialStates.floorEntry(requestedTo);
+        return entry == null ? null : entry.getValue();
+    }
+
+    public synchronized void put(String revRegId, String credRevId, long requestedTo, State state) {
+        String key = key(revRegId, credRevId);
+        TreeMap<Long, State> credentialStates = states.get(key);
+        if (credentialStates == null) {
+            credentialStates = new TreeMap<>();
+            states.put(key, credentialStates);
+        }
+        credentialStates.put(requestedTo, state);
+        while (credentialStates.size() > MAX_STATES_PER_CREDENTIAL) {
+            credentialStates.pollFirstEntry();
+        }
+        while (states.size() > maxCredentials) {
+            String eldest = states.keySet().iterator().next();
+            states.remove(eldest);
+        }
+    }
+
+    public synchronized void clear() {
+        states.clear();
+        readers.clear();
+    }
+
+    private static String key(String revRegId, String credRevId) {
+        return revRegId + "\n" + credRevId;
+    }
+
+    public static class State {
+        final long timestamp;
+        final String stateJson;
+
+        public State(long timestamp, String stateJson) {
+            this.timestamp = timestamp;
+            this.stateJson = stateJson;
+        }
+    }
+}
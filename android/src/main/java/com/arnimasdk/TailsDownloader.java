@@ -0,0 +1,211 @@
+/*
+  Copyright AyanWorks Technology Solutions Pvt. Ltd. All Rights Reserved.
+  SPDX-License-Identifier: Apache-2.0
+*/
+package com.arnimasdk;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Downloads tails files into a {@link TailsStore}, naming each file after its tails hash as
+ * the Indy blob storage reader expects. Data is written to a ".part" file that is resumed with an HTTP
+ * Range request when a previous attempt was interrupted, checked against the tails hash and
+ * only then renamed into place, so a file under its final name is always complete.
+ * Concurrent requests for the same tails hash share one download.
+ */
+public class TailsDownloader {
+
+    private static final int CONNECT_TIMEOUT_MS = 15000;
+    private static final int READ_TIMEOUT_MS = 30000;
+    private static final long TRANSFER_CHUNK_BYTES = 256 * 1024;
+    private static final long PROGRESS_INTERVAL_BYTES = 1024 * 1024;
+    private static final String BASE58_ALPHABET = "123456789ABCDEFGHJKLMNPQRSTUVWXYZabcdefghijkmnopqrstuvwxyz";
+
+    private final TailsStore store;
+    private final File directory;
+    private final ProgressListener listener;
+    private final Metrics metrics;
+    private final Tracer tracer;
+    private final Map<String, CompletableFuture<File>> inFlight = new ConcurrentHashMap<>();
+
+    public TailsDownloader(TailsStore store, ProgressListener listener, Metrics metrics, Tracer tracer) {
+        this.store = store;
+        this.directory = store.getDirectory();
+        this.listener = listener;
+        this.metrics = metrics;
+        this.tracer = tracer;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the tails file for {@code tailsHash}, downloading it from {@code tailsLocation}
+     * first if it is not on disk yet.
+     */
+    public File download(String tailsLocation, String tailsHash, String revRegId) throws Exception {
+        File stored = store.lookup(tailsHash, revRegId);
+        if (stored != null) {
+            return stored;
+        }
+        File target = new File(directory, tailsHash);
+        CompletableFuture<File> future = new CompletableFuture<>();
+        CompletableFuture<File> existing = inFlight.putIfAbsent(tailsHash, future);
+        if (existing != null) {
+            try {
+                return existing.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
+        long started = metrics.start();
+        Tracer.Span span = tracer.begin("tails.download").put("tailsHash", tailsHash).put("revRegId", revRegId);
+        try {
+            File file = fetch(tailsLocation, tailsHash, target);
+            store.add(tailsHash, revRegId, file);
+            metrics.record("stage.tailsDownload", started, null);
+            span.put("bytes", file.length()).end();
+            future.complete(file);
+            return file;
+        } catch (Exception e) {
+            metrics.record("stage.tailsDownload", started, Metrics.errorCode(e));
+            span.end(e);
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(tailsHash, future);
+        }
+    }
+
+    private File fetch(String tailsLocation, String tailsHash, File target) throws Exception {
+        if (target.isFile()) {
+            // Files written by older versions were not verified and may be truncated.
+            if (sha256Base58(target).equals(tailsHash)) {
+                return target;
+            }
+            target.delete();
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create tails directory " + directory);
+        }
+        File partFile = new File(directory, tailsHash + ".part");
+        long offset = partFile.isFile() ? partFile.length() : 0;
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(tailsLocation).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        if (offset > 0) {
+            connection.setRequestProperty("Range", "bytes=" + offset + "-");
+        }
+        try {
+            int status = connection.getResponseCode();
+            if (status == 416 && offset > 0) {
+                // The part file already holds the whole body; verification decides whether it is usable.
+                return verifyAndMove(partFile, target, tailsHash);
+            }
+            if (status == HttpURLConnection.HTTP_OK) {
+                offset = 0;
+            } else if (status != HttpURLConnection.HTTP_PARTIAL) {
+                throw new IOException("Tails download failed with HTTP " + status + " for " + tailsLocation);
+            }
+            long contentLength = connection.getContentLength();
+            long total = contentLength < 0 ? -1 : offset + contentLength;
+
+            RandomAccessFile output = new RandomAccessFile(partFile, "rw");
+            InputStream input = connection.getInputStream();
+            try {
+                FileChannel fileChannel = output.getChannel();
+                fileChannel.truncate(offset);
+                ReadableByteChannel source = Channels.newChannel(input);
+                long position = offset;
+                long reported = position;
+                long transferred;
+                listener.onProgress(tailsHash, position, total);
+                while ((transferred = fileChannel.transferFrom(source, position, TRANSFER_CHUNK_BYTES)) > 0) {
+                    position += transferred;
+                    metrics.addBytes("stage.tailsDownload", transferred);
+                    if (position - reported >= PROGRESS_INTERVAL_BYTES) {
+                        listener.onProgress(tailsHash, position, total);
+                        reported = position;
+                    }
+                }
+                fileChannel.force(true);
+                if (reported != position) {
+                    listener.onProgress(tailsHash, position, total);
+                }
+            } finally {
+                input.close();
+                output.close();
+            }
+        } finally {
+            connection.disconnect();
+        }
+        return verifyAndMove(partFile, target, tailsHash);
+    }
+
+    private File verifyAndMove(File partFile, File target, String tailsHash) throws Exception {
+        String actualHash = sha256Base58(partFile);
+        if (!actualHash.equals(tailsHash)) {
+            partFile.delete();
+            throw new IOException("Tails file hash mismatch: expected " + tailsHash + " but got " + actualHash);
+        }
+        if (!partFile.renameTo(target)) {
+            throw new IOException("Cannot move tails file into place: " + target);
+        }
+        return target;
+    }
+
+    static String sha256Base58(File file) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        FileInputStream input = new FileInputStream(file);
+        try {
+            FileChannel channel = input.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        } finally {
+            input.close();
+        }
+        return base58(digest.digest());
+    }
+
+    private static String base58(byte[] data) {
+        StringBuilder builder = new StringBuilder();
+        BigInteger value = new BigInteger(1, data);
+        BigInteger base = BigInteger.valueOf(58);
+        while (value.signum() > 0) {
+            BigInteger[] divided = value.divideAndRemainder(base);
+            builder.append(BASE58_ALPHABET.charAt(divided[1].intValue()));
+            value = divided[0];
+        }
+        for (int i = 0; i < data.length && data[i] == 0; i++) {
+            builder.append(BASE58_ALPHABET.charAt(0));
+        }
+        return builder.reverse().toString();
+    }
+
+    public interface ProgressListener {
+        /** {@code totalBytes} is -1 when the server did not send a content length. */
+        void onProgress(String tailsHash, long bytesDownloaded, long totalBytes);
+    }
+}
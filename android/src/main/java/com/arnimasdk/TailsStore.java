@@ -0,0 +1,358 @@
+/*
+  Copyright AyanWorks Technology Solutions Pvt. Ltd. All Rights Reserved.
+  SPDX-License-Identifier: Apache-2.0
+*/
+package com.arnimasdk;
+
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Directory of verified tails files with an index recording size, hash, last access and
+ * revocation registry id for each file. Once the total size exceeds the byte budget the
+ * least recently used files are deleted, except files of registries that stored credentials
+ * refer to. Nothing is evicted until the credentials of at least one wallet have been scanned,
+ * and files whose registry is not known yet are kept until a download or lookup names it.
+ * Changes to the file set are written to the index at once; access times only every
+ * {@link #SAVE_INTERVAL_MS} or on {@link #flush()}.
+ */
+public class TailsStore {
+
+    public static final long DEFAULT_MAX_BYTES = 128L * 1024 * 1024;
+    public static final long SAVE_INTERVAL_MS = 30000;
+
+    private static final String INDEX_FILE = "tails-index.json";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File directory;
+    private final EvictionListener evictionListener;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<String, Set<String>> referencedRevRegIds = new HashMap<>();
+    private final Map<String, Set<String>> addedDuringScan = new HashMap<>();
+    private boolean referencesScanned;
+    private long maxBytes = DEFAULT_MAX_BYTES;
+    private boolean loaded;
+    private boolean dirty;
+    private long savedAt;
+
+    public TailsStore(File directory) {
+        this(directory, tailsHash -> {
+        });
+    }
+
+    public TailsStore(File directory, EvictionListener evictionListener) {
+        this.directory = directory;
+        this.evictionListener = evictionListener;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the indexed file for {@code tailsHash} and marks it as used, or null if it is
+     * not indexed or the file on disk no longer matches the index. A non-null {@code revRegId}
+     * resolves the registry of a file that was adopted without one.
+     */
+    public synchronized File lookup(String tailsHash, String revRegId) {
+        load();
+        Entry entry = entries.get(tailsHash);
+        if (entry == null) {
+            return null;
+        }
+        File file = new File(directory, tailsHash);
+        if (!file.isFile() || file.length() != entry.size) {
+            entries.remove(tailsHash);
+            evictionListener.onEvicted(tailsHash);
+            save();
+            return null;
+        }
+        if (entry.revRegId == null && revRegId != null) {
+            entry.revRegId = revRegId;
+            save();
+        }
+        if (!entry.verified) {
+            return null;
+        }
+        entry.lastAccess = System.currentTimeMillis();
+        dirty = true;
+        if (System.currentTimeMillis() - savedAt >= SAVE_INTERVAL_MS) {
+            save();
+        }
+        return file;
+    }
+
+    /** Records a tails file whose content has been checked against {@code tailsHash}. */
+    public synchronized void add(String tailsHash, String revRegId, File file) {
+        load();
+        Entry entry = new Entry(tailsHash, revRegId, file.length(), System.currentTimeMillis(), true);
+        entries.put(tailsHash, entry);
+        trim(tailsHash);
+        save();
+    }
+
+    /** Writes access times that are not in the index yet. */
+    public synchronized void flush() {
+        if (dirty) {
+            save();
+        }
+    }
+
+    public synchronized void setMaxBytes(long maxBytes) {
+        load();
+        this.maxBytes = Math.max(0, maxBytes);
+        trim(null);
+        save();
+    }
+
+    /**
+     * Marks the start of a scan of one wallet's credentials; registries added until the scan
+     * result is set are kept in that result.
+     */
+    public synchronized void beginReferenceScan(String walletId) {
+        addedDuringScan.put(walletId, new HashSet<String>());
+    }
+
+    /**
+     * Sets the registries whose tails files must be kept for one wallet to the result of a
+     * scan, together with the registries added since {@link #beginReferenceScan}.
+     */
+    public synchronized void setReferencedRevRegIds(String walletId, Collection<String> revRegIds) {
+        load();
+        Set<String> walletRevRegIds = new HashSet<>(revRegIds);
+        Set<String> added = addedDuringScan.remove(walletId);
+        if (added != null) {
+            walletRevRegIds.addAll(added);
+        }
+        referencedRevRegIds.put(walletId, walletRevRegIds);
+        referencesScanned = true;
+        trim(null);
+        save();
+    }
+
+    public synchronized void addReferencedRevRegId(String walletId, String revRegId) {
+        if (revRegId == null) {
+            return;
+        }
+        load();
+        Set<String> walletRevRegIds = referencedRevRegIds.get(walletId);
+        if (walletRevRegIds == null) {
+            walletRevRegIds = new HashSet<>();
+            referencedRevRegIds.put(walletId, walletRevRegIds);
+        }
+        walletRevRegIds.add(revRegId);
+        Set<String> added = addedDuringScan.get(walletId);
+        if (added != null) {
+            added.add(revRegId);
+        }
+        save();
+    }
+
+    public synchronized JSONObject getStats() throws Exception {
+        load();
+        long referencedBytes = 0;
+        int referencedFiles = 0;
+        int unresolvedFiles = 0;
+        for (Entry entry : entries.values()) {
+            if (isReferenced(entry)) {
+                referencedFiles++;
+                referencedBytes += entry.size;
+            } else if (entry.revRegId == null) {
+                unresolvedFiles++;
+            }
+        }
+        return new JSONObject()
+                .put("files", entries.size())
+                .put("bytes", totalBytes())
+                .put("maxBytes", maxBytes)
+                .put("referencedFiles", referencedFiles)
+                .put("referencedBytes", referencedBytes)
+                .put("unresolvedFiles", unresolvedFiles)
+                .put("referencesKnown", referencesScanned);
+    }
+
+    private void trim(String keepHash) {
+        if (!referencesScanned || totalBytes() <= maxBytes) {
+            return;
+        }
+        List<Entry> candidates = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (!entry.tailsHash.equals(keepHash) && !isPinned(entry)) {
+                candidates.add(entry);
+            }
+        }
+        candidates.sort((left, right) -> Long.compare(left.lastAccess, right.lastAccess));
+        long total = totalBytes();
+        for (Entry entry : candidates) {
+            if (total <= maxBytes) {
+                break;
+            }
+            File file = new File(directory, entry.tailsHash);
+            if (!file.exists() || file.delete()) {
+                entries.remove(entry.tailsHash);
+                evictionListener.onEvicted(entry.tailsHash);
+                total -= entry.size;
+            }
+        }
+    }
+
+    /** Files of referenced registries, and files whose registry is still unknown, are never evicted. */
+    private boolean isPinned(Entry entry) {
+        return entry.revRegId == null || isReferenced(entry);
+    }
+
+    private boolean isReferenced(Entry entry) {
+        if (entry.revRegId == null) {
+            return false;
+        }
+        for (Set<String> walletRevRegIds : referencedRevRegIds.values()) {
+            if (walletRevRegIds.contains(entry.revRegId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long totalBytes() {
+        long total = 0;
+        for (Entry entry : entries.values()) {
+            total += entry.size;
+        }
+        return total;
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        File indexFile = new File(directory, INDEX_FILE);
+        if (indexFile.isFile()) {
+            readIndex(indexFile);
+        }
+        adoptUnindexedFiles();
+    }
+
+    private void readIndex(File indexFile) {
+        try {
+            JSONObject index = new JSONObject(new String(readFile(indexFile), UTF_8));
+            Iterator<String> hashes = index.keys();
+            while (hashes.hasNext()) {
+                String tailsHash = hashes.next();
+                JSONObject item = index.getJSONObject(tailsHash);
+                File file = new File(directory, tailsHash);
+                long size = item.getLong("size");
+                if (file.isFile() && file.length() == size) {
+                    String revRegId = item.isNull("revRegId") ? null : item.optString("revRegId", null);
+                    entries.put(tailsHash, new Entry(tailsHash, revRegId, size, item.optLong("lastAccess", 0),
+                            item.optBoolean("verified", true)));
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            entries.clear();
+        }
+    }
+
+    /**
+     * Files written before the index existed are tracked as unverified so that they count
+     * against the budget; they are hashed again before their first use.
+     */
+    private void adoptUnindexedFiles() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isFile() && !entries.containsKey(name) && !name.startsWith(INDEX_FILE) && !name.endsWith(".part")) {
+                entries.put(name, new Entry(name, null, file.length(), file.lastModified(), false));
+            }
+        }
+    }
+
+    private void save() {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            return;
+        }
+        dirty = false;
+        savedAt = System.currentTimeMillis();
+        File indexFile = new File(directory, INDEX_FILE);
+        File tempFile = new File(directory, INDEX_FILE + ".tmp");
+        try {
+            JSONObject index = new JSONObject();
+            for (Entry entry : entries.values()) {
+                index.put(entry.tailsHash, new JSONObject()
+                        .put("hash", entry.tailsHash)
+                        .put("revRegId", entry.revRegId == null ? JSONObject.NULL : entry.revRegId)
+                        .put("size", entry.size)
+                        .put("lastAccess", entry.lastAccess)
+                        .put("verified", entry.verified));
+            }
+            OutputStream output = new FileOutputStream(tempFile);
+            try {
+                output.write(index.toString().getBytes(UTF_8));
+            } finally {
+                output.close();
+            }
+            if (!tempFile.renameTo(indexFile)) {
+                tempFile.delete();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            tempFile.delete();
+        }
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        InputStream input = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = input.read(buffer)) != -1) {
+                output.write(buffer, 0, count);
+            }
+            return output.toByteArray();
+        } finally {
+            input.close();
+        }
+    }
+
+    /** Told about every tails file that left the store, under the store lock. */
+    public interface EvictionListener {
+        void onEvicted(String tailsHash);
+    }
+
+    private static class Entry {
+        final String tailsHash;
+        final long size;
+        final boolean verified;
+        String revRegId;
+        long lastAccess;
+
+        Entry(String tailsHash, String revRegId, long size, long lastAccess, boolean verified) {
+            this.tailsHash = tailsHash;
+            this.revRegId = revRegId;
+            this.size = size;
+            this.lastAccess = lastAccess;
+            this.verified = verified;
+        }
+    }
+}
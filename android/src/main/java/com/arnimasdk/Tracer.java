@@ -0,0 +1,251 @@
+/*
+  Copyright AyanWorks Technology Solutions Pvt. Ltd. All Rights Reserved.
+  SPDX-License-Identifier: Apache-2.0
+*/
+package com.arnimasdk;
+
+import android.util.JsonWriter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records spans of native work into a bounded ring buffer and exports them as Chrome
+ * trace-event JSON. A span started while another is current on the thread becomes its child;
+ * {@link IndyExecutors#supply} carries the current span to the worker thread so fan-out work
+ * stays attached to the bridge call that started it, correlation id included. JS opens a
+ * correlation before a flow and ends it once the flow settled; every root span started while
+ * it is open carries its id, so a whole presentation can be followed across its native calls.
+ * Spans started while several flows overlap carry all of their ids. While tracing is off
+ * {@link #begin} returns a shared no-op span.
+ */
+public class Tracer {
+
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    private static final ThreadLocal<Span> CURRENT = new ThreadLocal<>();
+    private static final Span NOOP = new Span(null, null, null, 0, null);
+
+    private final AtomicLong nextSpanId = new AtomicLong();
+    private final long epochMicros = System.currentTimeMillis() * 1000;
+    private final long originNanos = System.nanoTime();
+    private final Map<String, Integer> correlations = new LinkedHashMap<>();
+    private volatile String correlationId;
+    private volatile boolean enabled;
+    private Span[] buffer = new Span[DEFAULT_CAPACITY];
+    private int next;
+    private int size;
+
+    public synchronized void setEnabled(boolean enabled, int capacity) {
+        this.enabled = enabled;
+        if (capacity > 0 && capacity != buffer.length) {
+            buffer = new Span[capacity];
+            next = 0;
+            size = 0;
+        }
+    }
+
+    /** Tags root spans with {@code correlationId} until a matching {@link #endCorrelation}. */
+    public void beginCorrelation(String correlationId) {
+        synchronized (correlations) {
+            Integer open = correlations.get(correlationId);
+            correlations.put(correlationId, open == null ? 1 : open + 1);
+            updateCorrelationId();
+        }
+    }
+
+    public void endCorrelation(String correlationId) {
+        synchronized (correlations) {
+            Integer open = correlations.get(correlationId);
+            if (open == null) {
+                return;
+            }
+            if (open > 1) {
+                correlations.put(correlationId, open - 1);
+            } else {
+                correlations.remove(correlationId);
+            }
+            updateCorrelationId();
+        }
+    }
+
+    private void updateCorrelationId() {
+        StringBuilder ids = new StringBuilder();
+        for (String id : correlations.keySet()) {
+            if (ids.length() > 0) {
+                ids.append(',');
+            }
+            ids.append(id);
+        }
+        correlationId = ids.length() == 0 ? null : ids.toString();
+    }
+
+    /** Starts a span as a child of the thread's current span and makes it current. */
+    public Span begin(String name) {
+        if (!enabled) {
+            return NOOP;
+        }
+        Span parent = CURRENT.get();
+        String spanCorrelationId = parent != null ? parent.correlationId : correlationId;
+        Span span = new Span(this, name, parent, nextSpanId.incrementAndGet(), spanCorrelationId);
+        CURRENT.set(span);
+        return span;
+    }
+
+    public static Span current() {
+        return CURRENT.get();
+    }
+
+    /** Makes {@code span} current on this thread and returns the span it replaced. */
+    public static Span activate(Span span) {
+        Span previous = CURRENT.get();
+        CURRENT.set(span);
+        return previous;
+    }
+
+    public static void restore(Span previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    public synchronized void clear() {
+        buffer = new Span[buffer.length];
+        next = 0;
+        size = 0;
+    }
+
+    /** Writes the buffered spans, oldest first, to {@code file} in Chrome trace-event format. */
+    public void export(File file) throws IOException {
+        Span[] spans;
+        synchronized (this) {
+            spans = new Span[size];
+            int start = (next - size + buffer.length) % buffer.length;
+            for (int i = 0; i < size; i++) {
+                spans[i] = buffer[(start + i) % buffer.length];
+            }
+        }
+        File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create trace directory " + directory);
+        }
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            writer.beginObject();
+            writer.name("displayTimeUnit").value("ms");
+            writer.name("traceEvents").beginArray();
+            for (Span span : spans) {
+                writer.beginObject();
+                writer.name("name").value(span.name);
+                writer.name("cat").value("arnima");
+                writer.name("ph").value("X");
+                writer.name("ts").value(span.startMicros);
+                writer.name("dur").value(span.durationMicros);
+                writer.name("pid").value(1);
+                writer.name("tid").value(span.threadId);
+                writer.name("args").beginObject();
+                writer.name("spanId").value(span.spanId);
+                if (span.parent != null) {
+                    writer.name("parentId").value(span.parent.spanId);
+                }
+                if (span.correlationId != null) {
+                    writer.name("correlationId").value(span.correlationId);
+                }
+                writer.name("thread").value(span.threadName);
+                for (Map.Entry<String, String> attribute : span.attributes.entrySet()) {
+                    writer.name(attribute.getKey()).value(attribute.getValue());
+                }
+                writer.endObject();
+                writer.endObject();
+            }
+            writer.endArray();
+            writer.endObject();
+        } finally {
+            writer.close();
+        }
+    }
+
+    private long nowMicros() {
+        return epochMicros + (System.nanoTime() - originNanos) / 1000;
+    }
+
+    private synchronized void add(Span span) {
+        buffer[next] = span;
+        next = (next + 1) % buffer.length;
+        if (size < buffer.length) {
+            size++;
+        }
+    }
+
+    public static class Span {
+        private final Tracer tracer;
+        private final String name;
+        private final Span parent;
+        private final long spanId;
+        private final String correlationId;
+        private final Map<String, String> attributes = new LinkedHashMap<>();
+        private final long startMicros;
+        private final long threadId;
+        private final String threadName;
+        private long durationMicros;
+        private boolean ended;
+
+        private Span(Tracer tracer, String name, Span parent, long spanId, String correlationId) {
+            this.tracer = tracer;
+            this.name = name;
+            this.parent = parent;
+            this.spanId = spanId;
+            this.correlationId = correlationId;
+            this.startMicros = tracer == null ? 0 : tracer.nowMicros();
+            Thread thread = Thread.currentThread();
+            this.threadId = thread.getId();
+            this.threadName = thread.getName();
+        }
+
+        public Span put(String key, Object value) {
+            if (tracer != null && value != null) {
+                synchronized (this) {
+                    attributes.put(key, String.valueOf(value));
+                }
+            }
+            return this;
+        }
+
+        /** Hands the span's thread back to its parent without ending it, e.g. once work was dispatched. */
+        public void leave() {
+            if (tracer != null && CURRENT.get() == this) {
+                restore(parent);
+            }
+        }
+
+        public void end() {
+            end(null);
+        }
+
+        /** Ends the span, recording the Indy error code of {@code error} when it is not null. */
+        public void end(Throwable error) {
+            if (tracer == null) {
+                return;
+            }
+            leave();
+            synchronized (this) {
+                if (ended) {
+                    return;
+                }
+                ended = true;
+                if (error != null) {
+                    attributes.put("error", Metrics.errorCode(error));
+                }
+                durationMicros = tracer.nowMicros() - startMicros;
+            }
+            tracer.add(this);
+        }
+    }
+}
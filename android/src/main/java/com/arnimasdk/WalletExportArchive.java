@@ -0,0 +1,191 @@
+/*
+  Copyright AyanWorks Technology Solutions Pvt. Ltd. All Rights Reserved.
+  SPDX-License-Identifier: Apache-2.0
+*/
+package com.arnimasdk;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Splits a wallet export file into gzip compressed chunks in a directory, next to a
+ * {@code manifest.json} that lists every chunk with its uncompressed length and the SHA-256
+ * of the compressed file, plus the SHA-256 of the whole export. {@link #restore} checks each
+ * chunk and the whole while it decompresses them back into a single export file, reading
+ * one chunk at a time.
+ */
+public class WalletExportArchive {
+
+    public static final String MANIFEST_FILE = "manifest.json";
+    public static final int DEFAULT_CHUNK_BYTES = 4 * 1024 * 1024;
+
+    private static final int FORMAT_VERSION = 1;
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** Writes the archive of {@code source} into {@code directory} and returns the manifest file. */
+    public static File write(File source, File directory, int chunkBytes, int compressionLevel, Progress progress)
+            throws Exception {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create archive directory " + directory);
+        }
+        long totalBytes = source.length();
+        MessageDigest wholeDigest = MessageDigest.getInstance("SHA-256");
+        JSONArray chunks = new JSONArray();
+        byte[] buffer = new byte[BUFFER_BYTES];
+        long done = 0;
+        InputStream input = new FileInputStream(source);
+        try {
+            for (int index = 0; done < totalBytes || index == 0; index++) {
+                String name = String.format(Locale.US, "part-%05d.gz", index);
+                File chunkFile = new File(directory, name);
+                MessageDigest chunkDigest = MessageDigest.getInstance("SHA-256");
+                long chunkLength = 0;
+                OutputStream output = new GZIPOutputStream(new DigestOutputStream(new FileOutputStream(chunkFile), chunkDigest),
+                        BUFFER_BYTES) {
+                    {
+                        def.setLevel(compressionLevel);
+                    }
+                };
+                try {
+                    int count;
+                    while (chunkLength < chunkBytes
+                            && (count = input.read(buffer, 0, (int) Math.min(buffer.length, chunkBytes - chunkLength))) != -1) {
+                        output.write(buffer, 0, count);
+                        wholeDigest.update(buffer, 0, count);
+                        chunkLength += count;
+                    }
+                } finally {
+                    output.close();
+                }
+                done += chunkLength;
+                chunks.put(new JSONObject()
+                        .put("file", name)
+                        .put("length", chunkLength)
+                        .put("compressedLength", chunkFile.length())
+                        .put("sha256", hex(chunkDigest.digest())));
+                if (!progress.onProgress(done, totalBytes)) {
+                    throw new CancellationException("Wallet export archive cancelled");
+                }
+                if (chunkLength == 0) {
+                    break;
+                }
+            }
+        } finally {
+            input.close();
+        }
+        JSONObject manifest = new JSONObject()
+                .put("version", FORMAT_VERSION)
+                .put("compression", "gzip")
+                .put("length", totalBytes)
+                .put("sha256", hex(wholeDigest.digest()))
+                .put("chunks", chunks);
+        File manifestFile = new File(directory, MANIFEST_FILE);
+        OutputStream manifestOutput = new FileOutputStream(manifestFile);
+        try {
+            manifestOutput.write(manifest.toString().getBytes(UTF_8));
+        } finally {
+            manifestOutput.close();
+        }
+        return manifestFile;
+    }
+
+    /**
+     * Decompresses the archive in {@code directory} into {@code target}, failing on the first
+     * chunk whose checksum or length does not match the manifest.
+     */
+    public static void restore(File directory, File target, Progress progress) throws Exception {
+        JSONObject manifest = new JSONObject(new String(readFully(new File(directory, MANIFEST_FILE)), UTF_8));
+        if (manifest.getInt("version") != FORMAT_VERSION) {
+            throw new IOException("Unsupported wallet export archive version " + manifest.getInt("version"));
+        }
+        long totalBytes = manifest.getLong("length");
+        JSONArray chunks = manifest.getJSONArray("chunks");
+        MessageDigest wholeDigest = MessageDigest.getInstance("SHA-256");
+        byte[] buffer = new byte[BUFFER_BYTES];
+        long done = 0;
+        OutputStream output = new DigestOutputStream(new FileOutputStream(target), wholeDigest);
+        try {
+            for (int i = 0; i < chunks.length(); i++) {
+                JSONObject chunk = chunks.getJSONObject(i);
+                MessageDigest chunkDigest = MessageDigest.getInstance("SHA-256");
+                InputStream raw = new DigestInputStream(new FileInputStream(new File(directory, chunk.getString("file"))), chunkDigest);
+                long chunkLength = 0;
+                try {
+                    InputStream input = new GZIPInputStream(raw, BUFFER_BYTES);
+                    int count;
+                    while ((count = input.read(buffer)) != -1) {
+                        output.write(buffer, 0, count);
+                        chunkLength += count;
+                    }
+                    // Whatever the inflater left unread still belongs to the checksum.
+                    while (raw.read(buffer) != -1) {
+                        // Drain.
+                    }
+                } finally {
+                    raw.close();
+                }
+                if (!hex(chunkDigest.digest()).equals(chunk.getString("sha256")) || chunkLength != chunk.getLong("length")) {
+                    throw new IOException("Wallet export archive chunk " + chunk.getString("file") + " is corrupt");
+                }
+                done += chunkLength;
+                if (!progress.onProgress(done, totalBytes)) {
+                    throw new CancellationException("Wallet export archive restore cancelled");
+                }
+            }
+        } catch (Exception e) {
+            output.close();
+            target.delete();
+            throw e;
+        }
+        output.close();
+        if (done != totalBytes || !hex(wholeDigest.digest()).equals(manifest.getString("sha256"))) {
+            target.delete();
+            throw new IOException("Wallet export archive does not match its manifest");
+        }
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        InputStream input = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = input.read(buffer)) != -1) {
+                output.write(buffer, 0, count);
+            }
+            return output.toByteArray();
+        } finally {
+            input.close();
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(String.format(Locale.US, "%02x", b & 0xff));
+        }
+        return builder.toString();
+    }
+
+    public interface Progress {
+        /** Returns false to stop; the operation then fails with a {@link CancellationException}. */
+        boolean onProgress(long bytesDone, long totalBytes);
+    }
+}
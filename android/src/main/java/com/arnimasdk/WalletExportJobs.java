@@ -0,0 +1,205 @@
+/*
+  Copyright AyanWorks Technology Solutions Pvt. Ltd. All Rights Reserved.
+  SPDX-License-Identifier: Apache-2.0
+*/
+package com.arnimasdk;
+
+import org.hyperledger.indy.sdk.wallet.Wallet;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+/**
+ * Runs wallet exports as background jobs on their own thread, so a large backup does not
+ * occupy the wallet executor. While libindy writes the export its file size is reported as
+ * progress; with compression the export is then split into a {@link WalletExportArchive}.
+ * The native export itself cannot be interrupted, so a cancelled job stops at the next chunk
+ * or once the export returns, and removes its output. The caller keeps the wallet open for the
+ * job; it is handed back through {@code release} as soon as libindy no longer reads it.
+ */
+public class WalletExportJobs {
+
+    private static final long PROGRESS_INTERVAL_MS = 250;
+
+    private final ExecutorService executor;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final AtomicInteger nextJobId = new AtomicInteger();
+    private final Listener listener;
+
+    public WalletExportJobs(Listener listener) {
+        this.listener = listener;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "arnima-wallet-export");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public ExecutorService executor() {
+        return executor;
+    }
+
+    /**
+     * Queues an export of {@code wallet}. {@code options} may set {@code compress},
+     * {@code chunkBytes} and {@code compressionLevel} (1 fastest to 9 smallest).
+     * {@code release} runs once the wallet is no longer needed, also when the job fails.
+     */
+    public String start(Wallet wallet, String exportConfig, JSONObject options, Runnable release) throws Exception {
+        String path = new JSONObject(exportConfig).getString("path");
+        boolean compress = options.optBoolean("compress", false);
+        int chunkBytes = options.optInt("chunkBytes", WalletExportArchive.DEFAULT_CHUNK_BYTES);
+        int compressionLevel = options.optInt("compressionLevel", Deflater.BEST_SPEED);
+        Job job = new Job("export-" + nextJobId.incrementAndGet(), path, release);
+        jobs.put(job.id, job);
+        executor.execute(() -> {
+            try {
+                File output = new File(path);
+                if (output.exists()) {
+                    throw new IOException("Wallet export target already exists: " + path);
+                }
+                job.ownsOutput = true;
+                File exportFile = compress ? new File(path + ".tmp") : output;
+                exportFile.delete();
+                String config = compress ? new JSONObject(exportConfig).put("path", exportFile.getAbsolutePath()).toString() : exportConfig;
+                try {
+                    export(job, wallet, config, exportFile);
+                } finally {
+                    job.releaseWallet();
+                }
+                if (compress) {
+                    try {
+                        File manifest = WalletExportArchive.write(exportFile, output, Math.max(64 * 1024, chunkBytes),
+                                compressionLevel, (done, total) -> {
+                                    report(job, "compressing", done, total);
+                                    return !job.cancelled;
+                                });
+                        job.result = manifest.getAbsolutePath();
+                    } finally {
+                        exportFile.delete();
+                    }
+                } else {
+                    job.result = exportFile.getAbsolutePath();
+                }
+                finish(job, "completed", null);
+            } catch (Exception e) {
+                if (job.ownsOutput) {
+                    deleteOutput(new File(job.path));
+                }
+                finish(job, job.cancelled ? "cancelled" : "failed", e);
+            }
+        });
+        return job.id;
+    }
+
+    /** Returns false when the job is unknown or already finished. */
+    public boolean cancel(String jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            return false;
+        }
+        job.cancelled = true;
+        return true;
+    }
+
+    public void shutdown() {
+        for (Job job : jobs.values()) {
+            job.cancelled = true;
+        }
+        executor.shutdownNow();
+    }
+
+    private void export(Job job, Wallet wallet, String exportConfig, File exportFile) throws Exception {
+        CompletableFuture<Void> export = Wallet.exportWallet(wallet, exportConfig);
+        while (true) {
+            try {
+                export.get(PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                break;
+            } catch (TimeoutException e) {
+                report(job, "exporting", exportFile.length(), -1);
+            }
+        }
+        report(job, "exporting", exportFile.length(), exportFile.length());
+        if (job.cancelled) {
+            throw new CancellationException("Wallet export cancelled");
+        }
+    }
+
+    private void report(Job job, String phase, long bytes, long totalBytes) {
+        try {
+            listener.onEvent(new JSONObject()
+                    .put("jobId", job.id)
+                    .put("state", "running")
+                    .put("phase", phase)
+                    .put("bytes", bytes)
+                    .put("totalBytes", totalBytes));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void finish(Job job, String state, Exception error) {
+        job.releaseWallet();
+        jobs.remove(job.id);
+        try {
+            JSONObject event = new JSONObject().put("jobId", job.id).put("state", state);
+            if (job.result != null && error == null) {
+                event.put("path", job.result);
+            }
+            if (error != null && !(error instanceof CancellationException)) {
+                event.put("error", String.valueOf(error.getMessage()));
+                event.put("code", Metrics.errorCode(error));
+            }
+            listener.onEvent(event);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void deleteOutput(File output) {
+        new File(output.getPath() + ".tmp").delete();
+        File[] parts = output.listFiles();
+        if (parts != null) {
+            for (File part : parts) {
+                part.delete();
+            }
+        }
+        output.delete();
+    }
+
+    private static class Job {
+        final String id;
+        final String path;
+        private Runnable release;
+        volatile boolean cancelled;
+        volatile boolean ownsOutput;
+        volatile String result;
+
+        Job(String id, String path, Runnable release) {
+            this.id = id;
+            this.path = path;
+            this.release = release;
+        }
+
+        synchronized void releaseWallet() {
+            if (release != null) {
+                release.run();
+                release = null;
+            }
+        }
+    }
+
+    public interface Listener {
+        void onEvent(JSONObject event);
+    }
+}
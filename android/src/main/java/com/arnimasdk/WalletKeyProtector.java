@@ -0,0 +1,19 @@
+/*
+  Copyright AyanWorks Technology Solutions Pvt. Ltd. All Rights Reserved.
+  SPDX-License-Identifier: Apache-2.0
+*/
+package com.arnimasdk;
+
+/**
+ * Wraps the raw wallet keys cached for fast unlock. An app can pass its own protector to
+ * {@link ArnimaSdkPackage}, for example one whose key requires user authentication;
+ * {@link KeystoreWalletKeyProtector} is used otherwise.
+ */
+public interface WalletKeyProtector {
+
+    byte[] wrap(String walletId, byte[] key) throws Exception;
+
+    byte[] unwrap(String walletId, byte[] wrappedKey) throws Exception;
+
+    void delete(String walletId) throws Exception;
+}
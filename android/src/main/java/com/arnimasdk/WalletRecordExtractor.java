@@ -0,0 +1,237 @@
+/*
+  Copyright AyanWorks Technology Solutions Pvt. Ltd. All Rights Reserved.
+  SPDX-License-Identifier: Apache-2.0
+*/
+package com.arnimasdk;
+
+import android.util.JsonWriter;
+
+import org.hyperledger.indy.sdk.non_secrets.WalletRecord;
+import org.hyperledger.indy.sdk.non_secrets.WalletSearch;
+import org.hyperledger.indy.sdk.wallet.Wallet;
+import org.hyperledger.indy.sdk.wallet.WalletItemNotFoundException;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Moves the records of the given types out of a freshly imported wallet. Each type is paged
+ * through to the end and every page is handed to a {@link Sink} as soon as it is fetched, so
+ * the whole set is never held in memory. The extracted records are deleted once the search
+ * over their type is closed, with a bounded number of deletes in flight, and all deletes are
+ * awaited before the next type starts.
+ */
+public class WalletRecordExtractor {
+
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    private static final int MAX_CONCURRENT_DELETES = 16;
+    private static final String SEARCH_OPTIONS =
+            "{\"retrieveType\":true,\"retrieveValue\":true,\"retrieveTags\":true,\"retrieveTotalCount\":true}";
+
+    private final Wallet wallet;
+    private final int pageSize;
+    private final ProgressListener listener;
+
+    /** {@code listener} may be null when the caller does not report progress. */
+    public WalletRecordExtractor(Wallet wallet, int pageSize, ProgressListener listener) {
+        this.wallet = wallet;
+        this.pageSize = pageSize > 0 ? pageSize : DEFAULT_PAGE_SIZE;
+        this.listener = listener;
+    }
+
+    /**
+     * Extracts and deletes every record of {@code types}, resolving to a summary with the
+     * extracted, deleted and failed delete counts per type.
+     */
+    public JSONObject extract(List<String> types, Sink sink) throws Exception {
+        JSONObject summary = new JSONObject();
+        int total = 0;
+        for (String type : types) {
+            List<String> ids = new ArrayList<>();
+            int totalCount = extractType(type, sink, ids);
+            int failed = deleteAll(type, ids, totalCount);
+            summary.put(type, new JSONObject()
+                    .put("extracted", ids.size())
+                    .put("deleted", ids.size() - failed)
+                    .put("deleteFailures", failed));
+            total += ids.size();
+        }
+        return new JSONObject().put("types", summary).put("total", total);
+    }
+
+    private int extractType(String type, Sink sink, List<String> ids) throws Exception {
+        WalletSearch search = WalletSearch.open(wallet, type, "{}", SEARCH_OPTIONS).get();
+        int totalCount = -1;
+        try {
+            while (true) {
+                JSONObject page = new JSONObject(WalletSearch.searchFetchNextRecords(wallet, search, pageSize).get());
+                if (totalCount < 0 && !page.isNull("totalCount")) {
+                    totalCount = page.optInt("totalCount", -1);
+                }
+                JSONArray records = page.optJSONArray("records");
+                if (records == null || records.length() == 0) {
+                    break;
+                }
+                sink.onRecords(type, records);
+                for (int i = 0; i < records.length(); i++) {
+                    ids.add(records.getJSONObject(i).getString("id"));
+                }
+                if (listener != null) {
+                    listener.onProgress(type, ids.size(), 0, totalCount);
+                }
+                if (records.length() < pageSize) {
+                    break;
+                }
+            }
+        } finally {
+            WalletSearch.closeSearch(search).get();
+        }
+        return totalCount;
+    }
+
+    /** Deletes {@code ids} and returns how many deletes failed; a record that is already gone counts as deleted. */
+    private int deleteAll(String type, List<String> ids, int totalCount) throws Exception {
+        Semaphore inFlight = new Semaphore(MAX_CONCURRENT_DELETES);
+        List<CompletableFuture<Void>> deletes = new ArrayList<>(Math.min(ids.size(), pageSize));
+        int deleted = 0;
+        int failed = 0;
+        for (int i = 0; i < ids.size(); i++) {
+            inFlight.acquire();
+            CompletableFuture<Void> delete;
+            try {
+                delete = WalletRecord.delete(wallet, type, ids.get(i));
+            } catch (Exception e) {
+                delete = new CompletableFuture<>();
+                delete.completeExceptionally(e);
+            }
+            delete.whenComplete((result, error) -> inFlight.release());
+            deletes.add(delete);
+            if (deletes.size() == pageSize || i == ids.size() - 1) {
+                for (CompletableFuture<Void> pending : deletes) {
+                    if (awaitDelete(pending)) {
+                        deleted++;
+                    } else {
+                        failed++;
+                    }
+                }
+                deletes.clear();
+                if (listener != null) {
+                    listener.onProgress(type, ids.size(), deleted, totalCount);
+                }
+            }
+        }
+        return failed;
+    }
+
+    private static boolean awaitDelete(CompletableFuture<Void> delete) throws InterruptedException {
+        try {
+            delete.get();
+            return true;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof WalletItemNotFoundException) {
+                return true;
+            }
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /** Reads the record types from a JSON array of type names or of {@code {"type": ...}} objects. */
+    public static List<String> parseTypes(String typesJson) throws Exception {
+        JSONArray typesArray = new JSONArray(typesJson);
+        List<String> types = new ArrayList<>(typesArray.length());
+        for (int i = 0; i < typesArray.length(); i++) {
+            JSONObject item = typesArray.optJSONObject(i);
+            types.add(item != null ? item.getString("type") : typesArray.getString(i));
+        }
+        return types;
+    }
+
+    public interface Sink {
+        void onRecords(String type, JSONArray records) throws Exception;
+    }
+
+    public interface ProgressListener {
+        /** {@code totalCount} is -1 when the wallet did not report a count. */
+        void onProgress(String type, int extracted, int deleted, int totalCount);
+    }
+
+    /** Collects every record into one array; only for callers that expect a small result. */
+    public static class ArraySink implements Sink {
+        private final JSONArray records = new JSONArray();
+
+        @Override
+        public void onRecords(String type, JSONArray page) throws Exception {
+            for (int i = 0; i < page.length(); i++) {
+                records.put(page.get(i));
+            }
+        }
+
+        public JSONArray getRecords() {
+            return records;
+        }
+    }
+
+    /** Streams records into a file as one JSON array of {@code {type, id, value, tags}} objects. */
+    public static class FileSink implements Sink, Closeable {
+        private final JsonWriter writer;
+
+        public FileSink(File file) throws IOException {
+            File directory = file.getParentFile();
+            if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Cannot create directory " + directory);
+            }
+            writer = new JsonWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+            writer.beginArray();
+        }
+
+        @Override
+        public void onRecords(String type, JSONArray page) throws Exception {
+            for (int i = 0; i < page.length(); i++) {
+                JSONObject record = page.getJSONObject(i);
+                writer.beginObject();
+                writer.name("type").value(record.optString("type", type));
+                writer.name("id").value(record.getString("id"));
+                writer.name("value");
+                if (record.isNull("value")) {
+                    writer.nullValue();
+                } else {
+                    writer.value(record.getString("value"));
+                }
+                writer.name("tags");
+                JSONObject tags = record.optJSONObject("tags");
+                if (tags == null) {
+                    writer.nullValue();
+                } else {
+                    writer.beginObject();
+                    Iterator<String> names = tags.keys();
+                    while (names.hasNext()) {
+                        String name = names.next();
+                        writer.name(name).value(tags.getString(name));
+                    }
+                    writer.endObject();
+                }
+                writer.endObject();
+            }
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.endArray();
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,388 @@
+/*
+  Copyright AyanWorks Technology Solutions Pvt. Ltd. All Rights Reserved.
+  SPDX-License-Identifier: Apache-2.0
+*/
+package com.arnimasdk;
+
+import org.hyperledger.indy.sdk.wallet.Wallet;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Open wallet handles keyed by the {@code id} of their wallet config. Up to
+ * {@code maxOpenWallets} stay open at once so switching between profiles does not pay the
+ * key derivation again; opening one more closes the least recently used wallet that is idle.
+ * A wallet is busy while it is leased, either explicitly through {@link #acquire} or by a
+ * {@link #leased} call that got it. A busy wallet is never evicted, and closing it waits until
+ * its leases are released; calls that want it meanwhile wait for the close and open it again.
+ * Wallets are opened and closed outside the registry lock, so one slow open does not hold up
+ * calls on the other wallets; concurrent calls for the same wallet wait for the same open.
+ */
+public class WalletRegistry {
+
+    public static final int DEFAULT_MAX_OPEN_WALLETS = 2;
+
+    private final LinkedHashMap<String, Handle> wallets = new LinkedHashMap<>(4, 0.75f, true);
+    private final Map<String, CompletableFuture<Void>> closing = new HashMap<>();
+    private final List<Handle> draining = new ArrayList<>();
+    private final ThreadLocal<List<Handle>> callLeases = new ThreadLocal<>();
+    private final Opener opener;
+    private final Listener listener;
+    private int maxOpenWallets = DEFAULT_MAX_OPEN_WALLETS;
+
+    public WalletRegistry(Opener opener, Listener listener) {
+        this.opener = opener;
+        this.listener = listener;
+    }
+
+    /**
+     * Runs {@code task} so that every wallet it gets through {@link #get} stays open until
+     * the task returns.
+     */
+    public <T> T leased(IndyExecutors.Task<T> task) throws Exception {
+        List<Handle> outer = callLeases.get();
+        List<Handle> leases = new ArrayList<>();
+        callLeases.set(leases);
+        try {
+            return task.call();
+        } finally {
+            callLeases.set(outer);
+            for (Handle handle : leases) {
+                release(handle);
+            }
+        }
+    }
+
+    /** Returns the open wallet for {@code walletConfig}, opening it (and evicting another) if needed. */
+    public Wallet get(String walletConfig, String walletCredentials) throws Exception {
+        return get(walletConfig, walletCredentials, opener);
+    }
+
+    /**
+     * Like {@link #get(String, String)} but opens a wallet that is not open yet with {@code opener}.
+     * Inside {@link #leased} the wallet is leased until that call returns.
+     */
+    public Wallet get(String walletConfig, String walletCredentials, Opener opener) throws Exception {
+        Handle handle = lease(walletConfig, walletCredentials, opener);
+        List<Handle> leases = callLeases.get();
+        if (leases != null) {
+            leases.add(handle);
+        } else {
+            release(handle);
+        }
+        return handle.opened.get();
+    }
+
+    /**
+     * Closes {@code walletConfig} once its leases drain and opens it again with {@code opener},
+     * holding its slot throughout so no call opens it with another opener in between. Inside
+     * {@link #leased} the wallet is leased until that call returns.
+     */
+    public Wallet reopen(String walletConfig, String walletCredentials, Opener opener) throws Exception {
+        Handle handle = lease(walletConfig, walletCredentials, opener, true);
+        List<Handle> leases = callLeases.get();
+        if (leases != null) {
+            leases.add(handle);
+        } else {
+            release(handle);
+        }
+        return handle.opened.get();
+    }
+
+    /** Returns the open wallet for {@code walletConfig} leased until {@link #release} is called with it. */
+    public Wallet acquire(String walletConfig, String walletCredentials) throws Exception {
+        return lease(walletConfig, walletCredentials, opener).opened.get();
+    }
+
+    /**
+     * Leases {@code walletId} only if it is open and not being closed, for background work on
+     * a wallet the caller has no credentials for. Returns null otherwise.
+     */
+    public Wallet acquireOpen(String walletId) {
+        synchronized (this) {
+            Handle handle = wallets.get(walletId);
+            if (handle == null || !handle.opened.isDone() || handle.opened.isCompletedExceptionally()) {
+                return null;
+            }
+            handle.leases++;
+            return handle.opened.getNow(null);
+        }
+    }
+
+    /** Ends one lease taken by {@link #acquire} or {@link #acquireOpen}. */
+    public void release(Wallet wallet) throws Exception {
+        Handle leased = null;
+        synchronized (this) {
+            for (Handle handle : leasedHandles()) {
+                if (!handle.opened.isCompletedExceptionally() && handle.opened.getNow(null) == wallet) {
+                    leased = handle;
+                    break;
+                }
+            }
+        }
+        if (leased != null) {
+            release(leased);
+        }
+    }
+
+    /** Closes {@code walletId} once the calls using it have released it. */
+    public void close(String walletId) throws Exception {
+        Handle handle;
+        CompletableFuture<Void> pending;
+        synchronized (this) {
+            handle = wallets.get(walletId);
+            pending = closing.get(walletId);
+            if (handle != null) {
+                checkNotLeasedByCaller(walletId, handle);
+                requestClose(walletId, handle);
+            }
+        }
+        if (handle == null) {
+            if (pending != null) {
+                pending.get();
+            }
+            return;
+        }
+        handle.drained.get();
+        closeWallet(walletId, handle);
+    }
+
+    /** Closes every wallet once the calls using it have released it. */
+    public void closeAll() throws Exception {
+        List<Map.Entry<String, Handle>> open;
+        synchronized (this) {
+            open = new ArrayList<>(wallets.entrySet());
+            for (Map.Entry<String, Handle> entry : open) {
+                checkNotLeasedByCaller(entry.getKey(), entry.getValue());
+            }
+            for (Map.Entry<String, Handle> entry : open) {
+                requestClose(entry.getKey(), entry.getValue());
+            }
+        }
+        Exception failure = null;
+        for (Map.Entry<String, Handle> entry : open) {
+            try {
+                entry.getValue().drained.get();
+                closeWallet(entry.getKey(), entry.getValue());
+            } catch (Exception e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /** Closes every wallet without waiting for its leases, when the module is torn down. */
+    public void shutdown() throws Exception {
+        List<Map.Entry<String, Handle>> open;
+        synchronized (this) {
+            open = new ArrayList<>(wallets.entrySet());
+            for (Map.Entry<String, Handle> entry : open) {
+                requestClose(entry.getKey(), entry.getValue());
+            }
+        }
+        Exception failure = null;
+        for (Map.Entry<String, Handle> entry : open) {
+            try {
+                closeWallet(entry.getKey(), entry.getValue());
+            } catch (Exception e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    public void setMaxOpenWallets(int maxOpenWallets) throws Exception {
+        synchronized (this) {
+            this.maxOpenWallets = Math.max(1, maxOpenWallets);
+        }
+        closeEvicted();
+    }
+
+    public static String walletId(String walletConfig) throws Exception {
+        return new JSONObject(walletConfig).getString("id");
+    }
+
+    private Handle lease(String walletConfig, String walletCredentials, Opener opener) throws Exception {
+        return lease(walletConfig, walletCredentials, opener, false);
+    }
+
+    /**
+     * Leases the handle for {@code walletConfig}, opening it if needed. With {@code reopen} an
+     * open wallet is closed first and the new handle holds the slot meanwhile, so no other call
+     * can open the wallet in between.
+     */
+    private Handle lease(String walletConfig, String walletCredentials, Opener opener, boolean reopen) throws Exception {
+        String walletId = walletId(walletConfig);
+        Handle handle;
+        Handle replaced = null;
+        CompletableFuture<Void> previous;
+        boolean opening = false;
+        synchronized (this) {
+            handle = wallets.get(walletId);
+            if (reopen && handle != null) {
+                checkNotLeasedByCaller(walletId, handle);
+                replaced = handle;
+                requestClose(walletId, replaced);
+                handle = null;
+            }
+            previous = closing.get(walletId);
+            if (handle == null) {
+                handle = new Handle();
+                wallets.put(walletId, handle);
+                opening = true;
+            }
+            handle.leases++;
+        }
+        if (opening) {
+            try {
+                if (replaced != null) {
+                    replaced.drained.get();
+                    closeWallet(walletId, replaced);
+                } else if (previous != null) {
+                    previous.get();
+                }
+                Wallet wallet = opener.open(walletConfig, walletCredentials);
+                handle.opened.complete(wallet);
+                listener.onOpened(walletId, wallet);
+            } catch (Exception e) {
+                synchronized (this) {
+                    wallets.remove(walletId, handle);
+                }
+                handle.opened.completeExceptionally(e);
+                release(handle);
+                throw e;
+            }
+            closeEvicted();
+        }
+        try {
+            handle.opened.get();
+        } catch (ExecutionException e) {
+            if (!opening) {
+                release(handle);
+            }
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+        return handle;
+    }
+
+    private void release(Handle handle) throws Exception {
+        synchronized (this) {
+            if (handle.leases == 0) {
+                return;
+            }
+            handle.leases--;
+            if (handle.leases == 0 && handle.closeRequested) {
+                handle.drained.complete(null);
+                return;
+            }
+        }
+        closeEvicted();
+    }
+
+    /** Every handle that may hold leases: the open ones and those waiting to close. */
+    private List<Handle> leasedHandles() {
+        List<Handle> handles = new ArrayList<>(wallets.values());
+        handles.addAll(draining);
+        return handles;
+    }
+
+    /**
+     * Takes {@code handle} out of the map so no new call leases it; until it is closed a
+     * reopen of the same id waits.
+     */
+    private void requestClose(String walletId, Handle handle) {
+        wallets.remove(walletId);
+        closing.put(walletId, handle.closed);
+        handle.closeRequested = true;
+        if (handle.leases == 0) {
+            handle.drained.complete(null);
+        } else {
+            draining.add(handle);
+        }
+    }
+
+    /** Waiting for the caller's own lease to drain would never return. */
+    private void checkNotLeasedByCaller(String walletId, Handle handle) {
+        List<Handle> own = callLeases.get();
+        if (own != null && own.contains(handle)) {
+            throw new IllegalStateException("Wallet " + walletId + " cannot be closed by a call that uses it");
+        }
+    }
+
+    /** Closes the least recently used idle wallets while more than the limit are open. */
+    private void closeEvicted() throws Exception {
+        List<Map.Entry<String, Handle>> evicted = new ArrayList<>();
+        synchronized (this) {
+            int open = wallets.size();
+            Iterator<Map.Entry<String, Handle>> eldest = wallets.entrySet().iterator();
+            while (open > maxOpenWallets && eldest.hasNext()) {
+                Map.Entry<String, Handle> entry = eldest.next();
+                Handle handle = entry.getValue();
+                if (handle.leases == 0 && handle.opened.isDone()) {
+                    evicted.add(entry);
+                    open--;
+                }
+            }
+            for (Map.Entry<String, Handle> entry : evicted) {
+                requestClose(entry.getKey(), entry.getValue());
+            }
+        }
+        Exception failure = null;
+        for (Map.Entry<String, Handle> entry : evicted) {
+            try {
+                closeWallet(entry.getKey(), entry.getValue());
+            } catch (Exception e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void closeWallet(String walletId, Handle handle) throws Exception {
+        try {
+            Wallet wallet = handle.opened.isCompletedExceptionally() ? null : handle.opened.getNow(null);
+            if (wallet != null) {
+                listener.onClosing(walletId, wallet);
+                wallet.closeWallet().get();
+            }
+        } finally {
+            synchronized (this) {
+                closing.remove(walletId, handle.closed);
+                draining.remove(handle);
+            }
+            handle.closed.complete(null);
+        }
+    }
+
+    private static class Handle {
+        final CompletableFuture<Wallet> opened = new CompletableFuture<>();
+        final CompletableFuture<Void> drained = new CompletableFuture<>();
+        final CompletableFuture<Void> closed = new CompletableFuture<>();
+        boolean closeRequested;
+        int leases;
+    }
+
+    public interface Opener {
+        Wallet open(String walletConfig, String walletCredentials) throws Exception;
+    }
+
+    public interface Listener {
+        void onOpened(String walletId, Wallet wallet);
+
+        void onClosing(String walletId, Wallet wallet);
+    }
+}
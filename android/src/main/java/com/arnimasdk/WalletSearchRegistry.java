@@ -0,0 +1,150 @@
+/*
+  Copyright AyanWorks Technology Solutions Pvt. Ltd. All Rights Reserved.
+  SPDX-License-Identifier: Apache-2.0
+*/
+package com.arnimasdk;
+
+import org.hyperledger.indy.sdk.non_secrets.WalletSearch;
+import org.hyperledger.indy.sdk.wallet.Wallet;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Open wallet searches handed out to JS as integer handles. A search that has not been used
+ * for the idle timeout is closed by a periodic sweep, so a caller that forgets to close its
+ * cursor does not leak the native search handle.
+ */
+public class WalletSearchRegistry {
+
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(2);
+    /** Rejection code for a search that was closed, expired, or whose wallet was closed. */
+    public static final String CLOSED_CODE = "WALLET_SEARCH_CLOSED";
+
+    private final Map<Integer, SearchEntry> searches = new ConcurrentHashMap<>();
+    private final AtomicInteger nextHandle = new AtomicInteger();
+    private final ScheduledExecutorService scheduler;
+    private final long idleTimeoutMs;
+
+    public WalletSearchRegistry() {
+        this(DEFAULT_IDLE_TIMEOUT_MS);
+    }
+
+    public WalletSearchRegistry(long idleTimeoutMs) {
+        this.idleTimeoutMs = idleTimeoutMs;
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "arnima-wallet-search");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long sweepIntervalMs = Math.max(1000, idleTimeoutMs / 2);
+        executor.scheduleWithFixedDelay(this::evictIdle, sweepIntervalMs, sweepIntervalMs, TimeUnit.MILLISECONDS);
+        this.scheduler = executor;
+    }
+
+    public int register(String walletId, Wallet wallet, WalletSearch search) {
+        int handle = nextHandle.incrementAndGet();
+        searches.put(handle, new SearchEntry(walletId, wallet, search));
+        return handle;
+    }
+
+    /**
+     * Returns the search for {@code handle} and marks it as used, or throws if it was closed or evicted.
+     */
+    public SearchEntry get(int handle) {
+        SearchEntry entry = searches.get(handle);
+        if (entry == null) {
+            throw new ClosedException("Wallet search " + handle + " is closed or has expired");
+        }
+        entry.lastAccess = System.currentTimeMillis();
+        return entry;
+    }
+
+    public void close(int handle) {
+        SearchEntry entry = searches.remove(handle);
+        if (entry != null) {
+            closeQuietly(entry);
+        }
+    }
+
+    /** Closes every open search; called before the wallet they belong to is closed. */
+    public void closeAll() {
+        Iterator<SearchEntry> iterator = searches.values().iterator();
+        while (iterator.hasNext()) {
+            SearchEntry entry = iterator.next();
+            iterator.remove();
+            closeQuietly(entry);
+        }
+    }
+
+    /** Closes the open searches of one wallet; called before that wallet is closed. */
+    public void closeAll(Wallet wallet) {
+        for (Map.Entry<Integer, SearchEntry> search : searches.entrySet()) {
+            if (search.getValue().wallet == wallet && searches.remove(search.getKey(), search.getValue())) {
+                closeQuietly(search.getValue());
+            }
+        }
+    }
+
+    public int size() {
+        return searches.size();
+    }
+
+    public void shutdown() {
+        closeAll();
+        scheduler.shutdownNow();
+    }
+
+    private void evictIdle() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Integer, SearchEntry> search : searches.entrySet()) {
+            if (now - search.getValue().lastAccess > idleTimeoutMs && searches.remove(search.getKey(), search.getValue())) {
+                closeQuietly(search.getValue());
+            }
+        }
+    }
+
+    private static void closeQuietly(SearchEntry entry) {
+        synchronized (entry) {
+            if (entry.closed) {
+                return;
+            }
+            entry.closed = true;
+            try {
+                WalletSearch.closeSearch(entry.search).get();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * A search whose native handle is gone. Callers hold the entry lock and check
+     * {@link SearchEntry#closed} before using the search, so they never touch a closed handle.
+     */
+    public static class ClosedException extends IllegalStateException {
+        public ClosedException(String message) {
+            super(message);
+        }
+    }
+
+    public static class SearchEntry {
+        final String walletId;
+        final Wallet wallet;
+        final WalletSearch search;
+        volatile long lastAccess;
+        boolean closed;
+
+        SearchEntry(String walletId, Wallet wallet, WalletSearch search) {
+            this.walletId = walletId;
+            this.wallet = wallet;
+            this.search = search;
+            this.lastAccess = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,312 @@
+/*
+  Copyright AyanWorks Technology Solutions Pvt. Ltd. All Rights Reserved.
+  SPDX-License-Identifier: Apache-2.0
+*/
+package com.arnimasdk;
+
+import android.util.Base64;
+
+import org.hyperledger.indy.sdk.non_secrets.WalletRecord;
+import org.hyperledger.indy.sdk.wallet.Wallet;
+import org.hyperledger.indy.sdk.wallet.WalletAccessFailedException;
+import org.hyperledger.indy.sdk.wallet.WalletNotFoundException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Opens wallets, using a cached raw key for wallets that have fast unlock enabled so the
+ * ARGON2I derivation on the passphrase is skipped. Enabling rekeys the wallet to a random RAW
+ * key that is cached wrapped by the {@link WalletKeyProtector}. A recovery copy of the key is
+ * kept in a companion wallet opened with the passphrase, so the usual derivation protects it;
+ * it is read only when the protector can no longer unwrap the cached key.
+ */
+public class WalletUnlocker implements WalletRegistry.Opener {
+
+    private static final String RAW = "RAW";
+    private static final String RECOVERY_SUFFIX = "-fast-unlock-recovery";
+    private static final String RECOVERY_RECORD_TYPE = "fast-unlock-key";
+    private static final String DEFAULT_DERIVATION_METHOD = "ARGON2I_MOD";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File directory;
+    private final WalletKeyProtector protector;
+
+    public WalletUnlocker(File directory, WalletKeyProtector protector) {
+        this.directory = directory;
+        this.protector = protector;
+    }
+
+    public boolean isEnabled(String walletId) {
+        return keyFile(walletId).isFile();
+    }
+
+    @Override
+    public Wallet open(String walletConfig, String walletCredentials) throws Exception {
+        String walletId = WalletRegistry.walletId(walletConfig);
+        if (!isEnabled(walletId)) {
+            return Wallet.openWallet(walletConfig, walletCredentials).get();
+        }
+        String cachedKey = readKey(walletId);
+        if (cachedKey == null) {
+            cachedKey = recoverKey(walletConfig, walletCredentials);
+        }
+        if (cachedKey != null) {
+            Wallet wallet = openIfAccessible(walletConfig, rawCredentials(walletCredentials, cachedKey).toString());
+            if (wallet != null) {
+                return wallet;
+            }
+        }
+        // The rekey may never have completed, in which case the wallet still opens with its passphrase.
+        Wallet wallet = openIfAccessible(walletConfig, walletCredentials);
+        if (wallet == null) {
+            throw inaccessible(walletId, cachedKey);
+        }
+        forget(walletConfig, walletCredentials);
+        return wallet;
+    }
+
+    /**
+     * Opens the wallet with its passphrase once more, rekeying it to a new random raw key. The
+     * key and its recovery copy are stored before the rekey so an interrupted migration is
+     * detected on next open.
+     */
+    public Wallet enable(String walletConfig, String walletCredentials) throws Exception {
+        String walletId = WalletRegistry.walletId(walletConfig);
+        JSONObject credentials = new JSONObject(walletCredentials);
+        if (isEnabled(walletId) || RAW.equals(credentials.optString("key_derivation_method"))) {
+            return open(walletConfig, walletCredentials);
+        }
+        String rawKey = Wallet.generateWalletKey("{}").get();
+        try {
+            writeRecoveryKey(walletConfig, walletCredentials, rawKey);
+            writeKey(walletId, rawKey);
+            credentials.put("rekey", rawKey).put("rekey_derivation_method", RAW);
+            return Wallet.openWallet(walletConfig, credentials.toString()).get();
+        } catch (Exception e) {
+            forget(walletConfig, walletCredentials);
+            throw e;
+        }
+    }
+
+    /** Rekeys the wallet back to its passphrase and drops the cached key. */
+    public Wallet disable(String walletConfig, String walletCredentials) throws Exception {
+        String walletId = WalletRegistry.walletId(walletConfig);
+        if (!isEnabled(walletId)) {
+            return Wallet.openWallet(walletConfig, walletCredentials).get();
+        }
+        String cachedKey = readKey(walletId);
+        if (cachedKey == null) {
+            cachedKey = recoverKey(walletConfig, walletCredentials);
+        }
+        Wallet wallet = cachedKey == null ? null : openIfAccessible(walletConfig, restoreCredentials(walletCredentials, cachedKey));
+        if (wallet == null) {
+            wallet = openIfAccessible(walletConfig, walletCredentials);
+            if (wallet == null) {
+                throw inaccessible(walletId, cachedKey);
+            }
+        }
+        forget(walletConfig, walletCredentials);
+        return wallet;
+    }
+
+    /**
+     * Deletes the wallet with the cached raw key when fast unlock is enabled, or with its
+     * passphrase, and drops the cached key and its recovery copy once the wallet is gone.
+     */
+    public void delete(String walletConfig, String walletCredentials) throws Exception {
+        String walletId = WalletRegistry.walletId(walletConfig);
+        if (isEnabled(walletId)) {
+            String cachedKey = readKey(walletId);
+            if (cachedKey == null) {
+                cachedKey = recoverKey(walletConfig, walletCredentials);
+            }
+            if (cachedKey != null && deleteIfAccessible(walletConfig, rawCredentials(walletCredentials, cachedKey).toString())) {
+                forget(walletConfig, walletCredentials);
+                return;
+            }
+            if (!deleteIfAccessible(walletConfig, walletCredentials)) {
+                throw inaccessible(walletId, cachedKey);
+            }
+        } else {
+            Wallet.deleteWallet(walletConfig, walletCredentials).get();
+        }
+        forget(walletConfig, walletCredentials);
+    }
+
+    /** Drops the cached key and its recovery copy. */
+    private void forget(String walletConfig, String walletCredentials) throws Exception {
+        String walletId = WalletRegistry.walletId(walletConfig);
+        keyFile(walletId).delete();
+        try {
+            protector.delete(walletId);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        try {
+            deleteRecovery(recoveryConfig(walletConfig), passphraseCredentials(walletCredentials));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Reads the raw key back from the recovery wallet and caches it again, or returns null when
+     * there is no recovery copy the passphrase opens.
+     */
+    private String recoverKey(String walletConfig, String walletCredentials) throws Exception {
+        Wallet recovery;
+        try {
+            recovery = openIfAccessible(recoveryConfig(walletConfig), passphraseCredentials(walletCredentials));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof WalletNotFoundException) {
+                return null;
+            }
+            throw e;
+        }
+        if (recovery == null) {
+            return null;
+        }
+        String rawKey;
+        try {
+            String walletId = WalletRegistry.walletId(walletConfig);
+            rawKey = new JSONObject(WalletRecord.get(recovery, RECOVERY_RECORD_TYPE, walletId,
+                    "{\"retrieveValue\":true}").get()).getString("value");
+        } finally {
+            recovery.closeWallet().get();
+        }
+        try {
+            writeKey(WalletRegistry.walletId(walletConfig), rawKey);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return rawKey;
+    }
+
+    private static void writeRecoveryKey(String walletConfig, String walletCredentials, String rawKey) throws Exception {
+        String config = recoveryConfig(walletConfig);
+        String credentials = passphraseCredentials(walletCredentials);
+        deleteRecovery(config, credentials);
+        Wallet.createWallet(config, credentials).get();
+        Wallet recovery = Wallet.openWallet(config, credentials).get();
+        try {
+            WalletRecord.add(recovery, RECOVERY_RECORD_TYPE, WalletRegistry.walletId(walletConfig), rawKey, "{}").get();
+        } finally {
+            recovery.closeWallet().get();
+        }
+    }
+
+    private static void deleteRecovery(String config, String credentials) throws Exception {
+        try {
+            deleteIfAccessible(config, credentials);
+        } catch (ExecutionException e) {
+            if (!(e.getCause() instanceof WalletNotFoundException)) {
+                throw e;
+            }
+        }
+    }
+
+    private static String recoveryConfig(String walletConfig) throws Exception {
+        JSONObject config = new JSONObject(walletConfig);
+        return config.put("id", config.getString("id") + RECOVERY_SUFFIX).toString();
+    }
+
+    private static String passphraseCredentials(String walletCredentials) throws Exception {
+        JSONObject credentials = new JSONObject(walletCredentials);
+        credentials.remove("rekey");
+        credentials.remove("rekey_derivation_method");
+        return credentials.toString();
+    }
+
+    private static Wallet openIfAccessible(String walletConfig, String walletCredentials) throws Exception {
+        try {
+            return Wallet.openWallet(walletConfig, walletCredentials).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof WalletAccessFailedException) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    private static boolean deleteIfAccessible(String walletConfig, String walletCredentials) throws Exception {
+        try {
+            Wallet.deleteWallet(walletConfig, walletCredentials).get();
+            return true;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof WalletAccessFailedException) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    private static IllegalStateException inaccessible(String walletId, String cachedKey) {
+        if (cachedKey == null) {
+            return new IllegalStateException("The fast unlock key of wallet " + walletId + " cannot be read");
+        }
+        return new IllegalStateException("Wallet " + walletId + " opens neither with its fast unlock key nor with the passphrase");
+    }
+
+    private static JSONObject rawCredentials(String walletCredentials, String rawKey) throws Exception {
+        JSONObject credentials = new JSONObject(walletCredentials);
+        credentials.remove("rekey");
+        credentials.remove("rekey_derivation_method");
+        return credentials.put("key", rawKey).put("key_derivation_method", RAW);
+    }
+
+    private static String restoreCredentials(String walletCredentials, String rawKey) throws Exception {
+        JSONObject credentials = new JSONObject(walletCredentials);
+        return rawCredentials(walletCredentials, rawKey)
+                .put("rekey", credentials.getString("key"))
+                .put("rekey_derivation_method", credentials.optString("key_derivation_method", DEFAULT_DERIVATION_METHOD))
+                .toString();
+    }
+
+    private String readKey(String walletId) {
+        try {
+            RandomAccessFile file = new RandomAccessFile(keyFile(walletId), "r");
+            byte[] wrapped;
+            try {
+                wrapped = new byte[(int) file.length()];
+                file.readFully(wrapped);
+            } finally {
+                file.close();
+            }
+            return new String(protector.unwrap(walletId, wrapped), UTF_8);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private void writeKey(String walletId, String rawKey) throws Exception {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create wallet key directory " + directory);
+        }
+        byte[] wrapped = protector.wrap(walletId, rawKey.getBytes(UTF_8));
+        File target = keyFile(walletId);
+        File tempFile = new File(directory, target.getName() + ".tmp");
+        OutputStream output = new FileOutputStream(tempFile);
+        try {
+            output.write(wrapped);
+        } finally {
+            output.close();
+        }
+        if (!tempFile.renameTo(target)) {
+            tempFile.delete();
+            throw new IOException("Cannot store wallet key " + target);
+        }
+    }
+
+    private File keyFile(String walletId) {
+        String name = Base64.encodeToString(walletId.getBytes(UTF_8), Base64.URL_SAFE | Base64.NO_WRAP | Base64.NO_PADDING);
+        return new File(directory, name + ".key");
+    }
+}
@@ -0,0 +1,180 @@
+/*
+  Copyright AyanWorks Technology Solutions Pvt. Ltd. All Rights Reserved.
+  SPDX-License-Identifier: Apache-2.0
+*/
+package com.arnimasdk;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class OutboundTransportTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private HttpServer server;
+    private OutboundTransport transport;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private volatile int[] statuses = {200};
+    private volatile String retryAfter;
+    private volatile long delayMs;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", this::handle);
+        server.start();
+        transport = new OutboundTransport(new Metrics(report -> {
+        }), new Tracer());
+        transport.configure(new JSONObject().put("retryBackoffMs", 10));
+    }
+
+    @After
+    public void tearDown() {
+        transport.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    public void retriesUnavailableEndpointThatNamesRetryAfter() throws Exception {
+        statuses = new int[]{503, 200};
+        retryAfter = "0";
+
+        OutboundTransport.Response response = transport.send(endpoint(), "packed".getBytes(UTF_8)).get(10, TimeUnit.SECONDS);
+
+        assertEquals(200, response.status);
+        assertEquals("received 6 bytes", response.body);
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void resolvesUnavailableWithoutRetryAfter() throws Exception {
+        statuses = new int[]{503};
+
+        OutboundTransport.Response response = transport.send(endpoint(), "packed".getBytes(UTF_8)).get(10, TimeUnit.SECONDS);
+
+        assertEquals(503, response.status);
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void resolvesClientErrorsWithoutRetry() throws Exception {
+        statuses = new int[]{400};
+
+        OutboundTransport.Response response = transport.send(endpoint(), "packed".getBytes(UTF_8)).get(10, TimeUnit.SECONDS);
+
+        assertEquals(400, response.status);
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void doesNotResendAfterReadTimeout() throws Exception {
+        transport.configure(new JSONObject().put("readTimeoutMs", 100));
+        delayMs = 500;
+
+        try {
+            transport.send(endpoint(), "packed".getBytes(UTF_8)).get(10, TimeUnit.SECONDS);
+            fail("Expected the send to time out");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        Thread.sleep(delayMs);
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void retriesRefusedConnectionUpToMaxAttempts() throws Exception {
+        ServerSocket socket = new ServerSocket(0);
+        int port = socket.getLocalPort();
+        socket.close();
+
+        try {
+            transport.send("http://127.0.0.1:" + port + "/agent", "packed".getBytes(UTF_8)).get(10, TimeUnit.SECONDS);
+            fail("Expected the send to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void limitsConcurrentRequestsPerEndpoint() throws Exception {
+        delayMs = 100;
+        List<CompletableFuture<OutboundTransport.Response>> sends = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            sends.add(transport.send(endpoint(), ("message " + i).getBytes(UTF_8)));
+        }
+        for (CompletableFuture<OutboundTransport.Response> send : sends) {
+            assertEquals(200, send.get(10, TimeUnit.SECONDS).status);
+        }
+
+        assertEquals(12, requests.get());
+        assertTrue("at most " + maxActive.get() + " concurrent requests",
+                maxActive.get() <= OutboundTransport.DEFAULT_MAX_CONNECTIONS_PER_ENDPOINT);
+    }
+
+    private String endpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/agent";
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int request = requests.getAndIncrement();
+        int running = active.incrementAndGet();
+        maxActive.accumulateAndGet(running, Math::max);
+        try {
+            int received = drain(exchange.getRequestBody());
+            if (delayMs > 0) {
+                Thread.sleep(delayMs);
+            }
+            int[] replies = statuses;
+            int status = replies[Math.min(request, replies.length - 1)];
+            if (retryAfter != null && status != 200) {
+                exchange.getResponseHeaders().set("Retry-After", retryAfter);
+            }
+            byte[] body = ("received " + received + " bytes").getBytes(UTF_8);
+            exchange.sendResponseHeaders(status, body.length);
+            OutputStream output = exchange.getResponseBody();
+            output.write(body);
+            output.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+
+    private static int drain(InputStream input) throws IOException {
+        byte[] buffer = new byte[8192];
+        int total = 0;
+        int count;
+        while ((count = input.read(buffer)) != -1) {
+            total += count;
+        }
+        input.close();
+        return total;
+    }
+}
@@ -0,0 +1,251 @@
+/*
+  Copyright AyanWorks Technology Solutions Pvt. Ltd. All Rights Reserved.
+  SPDX-License-Identifier: Apache-2.0
+*/
+package com.arnimasdk;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TailsDownloaderTest {
+
+    private static final String REV_REG_ID = "Th7MpTaRZVRYnPiabds81Y:4:Th7MpTaRZVRYnPiabds81Y:3:CL:12:tag:CL_ACCUM:default";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+    private TailsDownloader downloader;
+    private File directory;
+    private byte[] content;
+    private String tailsHash;
+    private final List<String> ranges = new ArrayList<>();
+    private volatile boolean honourRange = true;
+    private volatile byte[] served;
+    private volatile CountDownLatch responding;
+
+    @Before
+    public void setUp() throws Exception {
+        useContent(300 * 1024);
+
+        directory = folder.newFolder("revoc");
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        downloader = new TailsDownloader(new TailsStore(directory), (hash, bytes, total) -> {
+        }, new Metrics(report -> {
+        }), new Tracer());
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void downloadsAndVerifiesFile() throws Exception {
+        File file = downloader.download(location(), tailsHash, REV_REG_ID);
+
+        assertEquals(new File(directory, tailsHash), file);
+        assertArrayEquals(content, read(file));
+        assertEquals(Arrays.asList((String) null), ranges);
+    }
+
+    @Test
+    public void resumesFromPartFile() throws Exception {
+        write(new File(directory, tailsHash + ".part"), Arrays.copyOf(content, 100 * 1024));
+
+        File file = downloader.download(location(), tailsHash, REV_REG_ID);
+
+        assertArrayEquals(content, read(file));
+        assertEquals(Arrays.asList("bytes=" + (100 * 1024) + "-"), ranges);
+        assertFalse(new File(directory, tailsHash + ".part").exists());
+    }
+
+    @Test
+    public void restartsWhenServerIgnoresRange() throws Exception {
+        honourRange = false;
+        write(new File(directory, tailsHash + ".part"), Arrays.copyOf(content, 100 * 1024));
+
+        File file = downloader.download(location(), tailsHash, REV_REG_ID);
+
+        assertArrayEquals(content, read(file));
+    }
+
+    @Test
+    public void usesCompletePartFileWhenRangeIsNotSatisfiable() throws Exception {
+        write(new File(directory, tailsHash + ".part"), content);
+
+        File file = downloader.download(location(), tailsHash, REV_REG_ID);
+
+        assertArrayEquals(content, read(file));
+        assertEquals(Arrays.asList("bytes=" + content.length + "-"), ranges);
+    }
+
+    @Test
+    public void rejectsFileWithWrongHash() throws Exception {
+        byte[] corrupt = content.clone();
+        corrupt[corrupt.length / 2] ^= 1;
+        served = corrupt;
+
+        try {
+            downloader.download(location(), tailsHash, REV_REG_ID);
+            fail("Expected a hash mismatch");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("hash mismatch"));
+        }
+        assertFalse(new File(directory, tailsHash).exists());
+        assertFalse(new File(directory, tailsHash + ".part").exists());
+    }
+
+    @Test
+    public void servesStoredFileWithoutRequest() throws Exception {
+        downloader.download(location(), tailsHash, REV_REG_ID);
+        ranges.clear();
+
+        File file = downloader.download(location(), tailsHash, REV_REG_ID);
+
+        assertArrayEquals(content, read(file));
+        assertTrue(ranges.isEmpty());
+    }
+
+    @Test
+    public void concurrentDownloadsOfOneHashShareOneRequest() throws Exception {
+        responding = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            Future<File> first = callers.submit(() -> downloader.download(location(), tailsHash, REV_REG_ID));
+            while (requestCount() == 0) {
+                Thread.sleep(10);
+            }
+            Future<File> second = callers.submit(() -> downloader.download(location(), tailsHash, REV_REG_ID));
+            Thread.sleep(200);
+            responding.countDown();
+
+            assertEquals(first.get(10, TimeUnit.SECONDS), second.get(10, TimeUnit.SECONDS));
+            assertArrayEquals(content, read(first.get()));
+            assertEquals(1, requestCount());
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void reportsIncreasingProgress() throws Exception {
+        useContent(3 * 1024 * 1024 + 123);
+        List<long[]> events = new ArrayList<>();
+        downloader = new TailsDownloader(new TailsStore(directory), (hash, bytes, total) -> events.add(new long[]{bytes, total}),
+                new Metrics(report -> {
+                }), new Tracer());
+
+        downloader.download(location(), tailsHash, REV_REG_ID);
+
+        assertTrue("only " + events.size() + " progress events", events.size() > 2);
+        for (int i = 1; i < events.size(); i++) {
+            assertTrue("progress went from " + events.get(i - 1)[0] + " to " + events.get(i)[0],
+                    events.get(i)[0] > events.get(i - 1)[0]);
+        }
+        long[] last = events.get(events.size() - 1);
+        assertEquals(content.length, last[0]);
+        assertEquals(content.length, last[1]);
+    }
+
+    private void useContent(int size) throws Exception {
+        content = new byte[size];
+        new Random(size).nextBytes(content);
+        served = content;
+        File source = new File(folder.getRoot(), "source");
+        write(source, content);
+        tailsHash = TailsDownloader.sha256Base58(source);
+    }
+
+    private int requestCount() {
+        synchronized (ranges) {
+            return ranges.size();
+        }
+    }
+
+    private String location() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/tails/" + tailsHash;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        synchronized (ranges) {
+            ranges.add(range);
+        }
+        CountDownLatch latch = responding;
+        if (latch != null) {
+            try {
+                latch.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        byte[] body = served;
+        int offset = 0;
+        int status = 200;
+        if (range != null && honourRange) {
+            offset = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+            if (offset >= body.length) {
+                exchange.sendResponseHeaders(416, -1);
+                exchange.close();
+                return;
+            }
+            status = 206;
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + offset + "-" + (body.length - 1) + "/" + body.length);
+        }
+        exchange.sendResponseHeaders(status, body.length - offset);
+        OutputStream output = exchange.getResponseBody();
+        output.write(body, offset, body.length - offset);
+        output.close();
+    }
+
+    private static void write(File file, byte[] bytes) throws IOException {
+        OutputStream output = new FileOutputStream(file);
+        try {
+            output.write(bytes);
+        } finally {
+            output.close();
+        }
+    }
+
+    private static byte[] read(File file) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            byte[] bytes = new byte[(int) input.length()];
+            input.readFully(bytes);
+            return bytes;
+        } finally {
+            input.close();
+        }
+    }
+}
@@ -865,16 +865,22 @@ RCT_EXPORT_METHOD(verifierVerifyProof
 }
 
 
-RCT_EXPORT_METHOD(proverSearchCredentialsForProofReq: (NSString *)proofRequest
+RCT_EXPORT_METHOD(proverSearchCredentialsForProofReq: (NSString *)walletConfig
+                  :(NSString *)walletCredentials
+                  :(NSString *)proofRequest
                   resolve:(RCTPromiseResolveBlock)resolve
                   reject:(RCTPromiseRejectBlock)reject) {
-    [IndyAnoncreds proverSearchCredentialsForProofRequest:proofRequest extraQueryJSON:nil walletHandle:self->WalletHandleNumber completion:^(NSError *errorSearchCredentialsForPR, IndyHandle generatedSearchHandle) {
-        if(errorSearchCredentialsForPR.code > 1) {
-            [self rejectResult:errorSearchCredentialsForPR reject:reject];
-        }
-        else {
-            NSNumber *searchHandler = [NSNumber numberWithInt:generatedSearchHandle];
-            resolve(searchHandler);
+    [self openWallet:walletConfig :walletCredentials completion:^(IndyHandle walletHandle) {
+        if (walletHandle > 0) {
+            [IndyAnoncreds proverSearchCredentialsForProofRequest:proofRequest extraQueryJSON:nil walletHandle:walletHandle completion:^(NSError *errorSearchCredentialsForPR, IndyHandle generatedSearchHandle) {
+                if(errorSearchCredentialsForPR.code > 1) {
+                    [self rejectResult:errorSearchCredentialsForPR reject:reject];
+                }
+                else {
+                    NSNumber *searchHandler = [NSNumber numberWithInt:generatedSearchHandle];
+                    resolve(searchHandler);
+                }
+            }];
         }
     }];
 }
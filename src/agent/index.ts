@@ -6,7 +6,7 @@
 import { decodeInvitationFromUrl, RecordType } from '../utils/Helpers';
 import { InboundMessage } from '../utils/Types';
 import { MessageType } from '../utils/MessageType';
-import { NativeModules } from 'react-native';
+import { NativeModules, Platform } from 'react-native';
 import { WalletConfig, WalletCredentials } from '../wallet/WalletInterface';
 import BasicMessageService from '../protocols/basicMessage/BasicMessageService';
 import ConnectionService from '../protocols/connection/ConnectionService';
@@ -28,6 +28,98 @@ class Agent {
     return await ArnimaSdk.getRequestRedirectionUrl(url);
   };
 
+  /**
+   * Turn native latency and error recording on or off (Android only). With a positive
+   * reportIntervalMs a 'metrics' device event carries a snapshot at that interval.
+   */
+  setMetricsEnabled = async (enabled: boolean, reportIntervalMs: number = 0) => {
+    try {
+      if (Platform.OS !== 'android') {
+        return null;
+      }
+      return await ArnimaSdk.setMetricsEnabled(enabled, reportIntervalMs);
+    } catch (error) {
+      console.log('Agent - Set metrics enabled error = ', error);
+      throw error;
+    }
+  };
+
+  getMetrics = async (reset: boolean = false) => {
+    try {
+      if (Platform.OS !== 'android') {
+        return null;
+      }
+      return JSON.parse(await ArnimaSdk.getMetrics(reset));
+    } catch (error) {
+      console.log('Agent - Get metrics error = ', error);
+      throw error;
+    }
+  };
+
+  /**
+   * Turn native span recording on or off (Android only); capacity bounds the ring buffer
+   */
+  setTracingEnabled = async (enabled: boolean, capacity: number = 0) => {
+    try {
+      if (Platform.OS !== 'android') {
+        return null;
+      }
+      return await ArnimaSdk.setTracingEnabled(enabled, capacity);
+    } catch (error) {
+      console.log('Agent - Set tracing enabled error = ', error);
+      throw error;
+    }
+  };
+
+  /**
+   * Run call with every native span started until it settles tagged with correlationId, e.g. a
+   * protocol thread id. Spans of flows running at the same time carry both ids
+   */
+  withTraceCorrelationId = async <T>(correlationId: string, call: () => Promise<T>): Promise<T> => {
+    if (Platform.OS !== 'android') {
+      return await call();
+    }
+    await ArnimaSdk.beginTraceCorrelation(correlationId);
+    try {
+      return await call();
+    } finally {
+      ArnimaSdk.endTraceCorrelation(correlationId).catch((error) => {
+        console.log('Agent - End trace correlation error = ', error);
+      });
+    }
+  };
+
+  /**
+   * Write the recorded spans as Chrome trace-event JSON and return the file path
+   */
+  exportTrace = async () => {
+    try {
+      if (Platform.OS !== 'android') {
+        return null;
+      }
+      return await ArnimaSdk.exportTrace();
+    } catch (error) {
+      console.log('Agent - Export trace error = ', error);
+      throw error;
+    }
+  };
+
+  /**
+   * Tune the native outbound transport used to send messages on Android: connectTimeoutMs,
+   * readTimeoutMs, maxConnectionsPerEndpoint, maxAttempts and retryBackoffMs, each optional.
+   */
+  setOutboundTransportConfig = async (config: { connectTimeoutMs?: number, readTimeoutMs?: number, maxConnectionsPerEndpoint?: number, maxAttempts?: number, retryBackoffMs?: number }) => {
+    try {
+      if (Platform.OS !== 'android') {
+        return null;
+      }
+      return await ArnimaSdk.setOutboundTransportConfig(JSON.stringify(config));
+    } catch (error) {
+      console.log('Agent - Set outbound transport config error = ', error);
+      throw error;
+    }
+  };
+
   createWallet = async (
     config: WalletConfig,
     credentials: WalletCredentials,
@@ -82,15 +174,50 @@ class Agent {
     }
   };
 
-  openWallet = async () => {
+  /**
+   * Open the wallet. With warmUpPool the default pool is opened and refreshed in the
+   * background right after, see waitForPoolReady.
+   */
+  openWallet = async (warmUpPool: boolean = false) => {
     try {
-      return await WalletService.openWallet();
+      const response = await WalletService.openWallet();
+      if (warmUpPool) {
+        PoolService.warmUpSelectedPool(
+          JSON.parse(this.wallet.walletConfig),
+          JSON.parse(this.wallet.walletCredentials),
+        ).catch(error => console.log('Agent - Warm up pool error = ', error));
+      }
+      return response;
     } catch (error) {
       console.log('Agent - Open wallet error = ', error);
       throw error;
     }
   };
 
+  enableFastUnlock = async () => {
+    try {
+      return await WalletService.enableFastUnlock(
+        JSON.parse(this.wallet.walletConfig),
+        JSON.parse(this.wallet.walletCredentials),
+      );
+    } catch (error) {
+      console.log('Agent - Enable fast unlock error = ', error);
+      throw error;
+    }
+  };
+
+  disableFastUnlock = async () => {
+    try {
+      return await WalletService.disableFastUnlock(
+        JSON.parse(this.wallet.walletConfig),
+        JSON.parse(this.wallet.walletCredentials),
+      );
+    } catch (error) {
+      console.log('Agent - Disable fast unlock error = ', error);
+      throw error;
+    }
+  };
+
   deleteWallet = async () => {
     try {
       return await WalletService.deleteWallet();
@@ -144,6 +271,60 @@ class Agent {
     }
   };
 
+  waitForPoolReady = async (poolName: string, timeoutMs: number = 0) => {
+    try {
+      return await PoolService.waitForPoolReady(poolName, timeoutMs);
+    } catch (error) {
+      console.log('Agent - Wait for pool ready error = ', error);
+      throw error;
+    }
+  };
+
+  closePool = async (poolName: string) => {
+    try {
+      return await PoolService.closePool(poolName);
+    } catch (error) {
+      console.log('Agent - Close pool error = ', error);
+      throw error;
+    }
+  };
+
+  getLedgerCacheStats = async () => {
+    try {
+      return await PoolService.getLedgerCacheStats();
+    } catch (error) {
+      console.log('Agent - Get ledger cache stats error = ', error);
+      throw error;
+    }
+  };
+
+  clearLedgerCache = async () => {
+    try {
+      return await PoolService.clearLedgerCache();
+    } catch (error) {
+      console.log('Agent - Clear ledger cache error = ', error);
+      throw error;
+    }
+  };
+
+  getTailsStoreStats = async () => {
+    try {
+      return await PoolService.getTailsStoreStats();
+    } catch (error) {
+      console.log('Agent - Get tails store stats error = ', error);
+      throw error;
+    }
+  };
+
+  setTailsStoreLimit = async (maxBytes: number) => {
+    try {
+      return await PoolService.setTailsStoreLimit(maxBytes);
+    } catch (error) {
+      console.log('Agent - Set tails store limit error = ', error);
+      throw error;
+    }
+  };
+
   deleteAllPools = async () => {
     try {
       return await PoolService.deleteAllPools(
@@ -3,7 +3,7 @@
   SPDX-License-Identifier: Apache-2.0
 */
 
-import { NativeModules } from 'react-native';
+import { NativeModules, Platform } from 'react-native';
 import { Pool, PoolTags } from './PoolInterface';
 import {
   Record,
@@ -49,7 +49,8 @@ class PoolService {
           poolName: poolName,
           isSelected: JSON.stringify(defaultPool),
         };
-        await WalletStorageService.addWalletRecord(
+        // Android resolves for an unchanged existing config too, whose record is already stored.
+        await WalletStorageService.addWalletRecordIfAbsent(
           configJson,
           credentialsJson,
           RecordType.Pool,
@@ -179,6 +180,176 @@ class PoolService {
     }
   }
 
+  /**
+   * Open and refresh a pool in the background so the first ledger read does not pay for
+   * the catchup. Android only; the outcome is emitted as a 'poolWarmUp' event
+   * ({ poolName, ready, error? }) and failures also surface through waitForPoolReady
+   *
+   * @param {string} poolName
+   * @return {*}  {Promise<null>}
+   * @memberof PoolService
+   */
+  async warmUpPool(poolName: string): Promise<null> {
+    try {
+      if (Platform.OS !== 'android') {
+        return null;
+      }
+      return await ArnimaSdk.warmUpPool(poolName);
+    } catch (error) {
+      console.log('Pool - Warm up pool error = ', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Warm up the pool selected as default, if there is one
+   *
+   * @param {WalletConfig} configJson
+   * @param {WalletCredentials} credentialsJson
+   * @return {*}  {Promise<string | null>} the name of the pool being warmed up
+   * @memberof PoolService
+   */
+  async warmUpSelectedPool(
+    configJson: WalletConfig,
+    credentialsJson: WalletCredentials,
+  ): Promise<string | null> {
+    try {
+      const poolRecords: Array<Record> =
+        await WalletStorageService.getWalletRecordsFromQuery(
+          configJson,
+          credentialsJson,
+          RecordType.Pool,
+          JSON.stringify({ isSelected: JSON.stringify(true) }),
+        );
+      if (poolRecords.length === 0) {
+        return null;
+      }
+      const pool: Pool = JSON.parse(poolRecords[0].value);
+      await this.warmUpPool(pool.poolName);
+      return pool.poolName;
+    } catch (error) {
+      console.log('Pool - Warm up selected pool error = ', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Wait until a pool is open and caught up, starting a warm-up if none is running.
+   * Resolves false when timeoutMs passes first; 0 waits as long as it takes
+   *
+   * @param {string} poolName
+   * @param {number} [timeoutMs=0]
+   * @return {*}  {Promise<boolean>}
+   * @memberof PoolService
+   */
+  async waitForPoolReady(poolName: string, timeoutMs: number = 0): Promise<boolean> {
+    try {
+      if (Platform.OS !== 'android') {
+        return true;
+      }
+      return await ArnimaSdk.waitForPoolReady(poolName, timeoutMs);
+    } catch (error) {
+      console.log('Pool - Wait for pool ready error = ', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Close the shared ledger connection for a pool, the native side reopens it on next use.
+   * iOS opens and closes the pool around every ledger call, so there is nothing to close there.
+   *
+   * @param {string} poolName
+   * @return {*}  {Promise<null>}
+   * @memberof PoolService
+   */
+  async closePool(poolName: string): Promise<null> {
+    try {
+      if (Platform.OS !== 'android') {
+        return null;
+      }
+      return await ArnimaSdk.closePool(poolName);
+    } catch (error) {
+      console.log('Pool - Close pool error = ', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Return hit/miss counters and sizes of the native schema, credential definition
+   * and revocation registry definition cache. iOS has no such cache and resolves an empty object.
+   *
+   * @return {*}  {Promise<Object>}
+   * @memberof PoolService
+   */
+  async getLedgerCacheStats(): Promise<Object> {
+    try {
+      if (Platform.OS !== 'android') {
+        return {};
+      }
+      return JSON.parse(await ArnimaSdk.getLedgerCacheStats());
+    } catch (error) {
+      console.log('Pool - Get ledger cache stats error = ', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Drop every cached ledger object from memory and disk, a no-op on iOS
+   *
+   * @return {*}  {Promise<null>}
+   * @memberof PoolService
+   */
+  async clearLedgerCache(): Promise<null> {
+    try {
+      if (Platform.OS !== 'android') {
+        return null;
+      }
+      return await ArnimaSdk.clearLedgerCache();
+    } catch (error) {
+      console.log('Pool - Clear ledger cache error = ', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Return file count, size, byte budget and the share held for stored credentials
+   * of the native tails file store. iOS has no managed store and resolves an empty object.
+   *
+   * @return {*}  {Promise<Object>}
+   * @memberof PoolService
+   */
+  async getTailsStoreStats(): Promise<Object> {
+    try {
+      if (Platform.OS !== 'android') {
+        return {};
+      }
+      return JSON.parse(await ArnimaSdk.getTailsStoreStats());
+    } catch (error) {
+      console.log('Pool - Get tails store stats error = ', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Set the byte budget of the tails file store, evicting least recently used files
+   * that no stored credential refers to. A no-op on iOS
+   *
+   * @param {number} maxBytes
+   * @return {*}  {Promise<null>}
+   * @memberof PoolService
+   */
+  async setTailsStoreLimit(maxBytes: number): Promise<null> {
+    try {
+      if (Platform.OS !== 'android') {
+        return null;
+      }
+      return await ArnimaSdk.setTailsStoreLimit(maxBytes);
+    } catch (error) {
+      console.log('Pool - Set tails store limit error = ', error);
+      throw error;
+    }
+  }
+
   async deleteAllPools(
     configJson: WalletConfig,
     credentialsJson: WalletCredentials,
@@ -41,3 +41,17 @@ export class Presentation {
     this.updatedAt = props.updatedAt;
   }
 }
+
+export interface ProofVerificationItem {
+  proofRequest: string;
+  proof: string;
+  schemas: string;
+  credentialDefs: string;
+  revRegDefs?: string;
+  revRegs?: string;
+}
+
+export interface ProofVerificationResult {
+  verified?: boolean;
+  error?: string;
+}
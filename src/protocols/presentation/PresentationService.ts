@@ -11,9 +11,9 @@ import {
   requestPresentationMessage,
 } from './PresentationMessages';
 import { InboundMessage, Message } from '../../utils/Types';
-import { NativeModules } from 'react-native';
+import { NativeModules, Platform } from 'react-native';
 import { Pool } from '../../pool/PoolInterface';
-import { Presentation } from './PresentationInterface';
+import { Presentation, ProofVerificationItem, ProofVerificationResult } from './PresentationInterface';
 import { PresentationState } from './PresentationState';
 import {
   RecordType,
@@ -412,8 +412,10 @@ class PresentationService {
           RecordType.Pool,
           JSON.stringify(queryPool),
         );
-      const [requestedCredentials, revocStates] =
+      const [requestedCredentials, revocStates, resolvedSchemas, resolvedCredDefs] =
         await this.getRequestedCredentialsForProofRequest(
+          configJson,
+          credentialsJson,
           proofRequest,
           presentationObj,
           poolName,
@@ -437,28 +439,32 @@ class PresentationService {
         );
       }
 
-      for (const credentialId of new Set(credIds)) {
-        const credentialInfo = await ArnimaSdk.proverGetCredential(
-          JSON.stringify(configJson),
-          JSON.stringify(credentialsJson),
-          credentialId,
+      let schemas = resolvedSchemas;
+      let credDefs = resolvedCredDefs;
+      if (schemas === undefined || credDefs === undefined) {
+        for (const credentialId of new Set(credIds)) {
+          const credentialInfo = await ArnimaSdk.proverGetCredential(
+            JSON.stringify(configJson),
+            JSON.stringify(credentialsJson),
+            credentialId,
+          );
+          credentialObjects.push(JSON.parse(credentialInfo));
+        }
+
+        schemas = await this.generateSchemaJson(
+          credentialObjects,
+          poolName,
+          poolConfig,
+          sdkDB.publicDid,
+        );
+        credDefs = await this.generateCredDefJson(
+          credentialObjects,
+          poolName,
+          poolConfig,
+          sdkDB.publicDid,
         );
-        credentialObjects.push(JSON.parse(credentialInfo));
       }
 
-      const schemas = await this.generateSchemaJson(
-        credentialObjects,
-        poolName,
-        poolConfig,
-        sdkDB.publicDid,
-      );
-      const credDefs = await this.generateCredDefJson(
-        credentialObjects,
-        poolName,
-        poolConfig,
-        sdkDB.publicDid,
-      );
-
       const presentation = await ArnimaSdk.proverCreateProof(
         JSON.stringify(configJson),
         JSON.stringify(credentialsJson),
@@ -526,6 +532,35 @@ class PresentationService {
     }
   }
 
+  /**
+   * Verify many proofs in parallel without touching the wallet
+   *
+   * @param {Array<ProofVerificationItem>} proofs
+   * @return {*}  {Promise<Array<ProofVerificationResult>>}
+   * @memberof PresentationService
+   */
+  async verifyProofs(proofs: Array<ProofVerificationItem>): Promise<Array<ProofVerificationResult>> {
+    try {
+      if (Platform.OS === 'ios') {
+        const results: Array<ProofVerificationResult> = [];
+        for (const item of proofs) {
+          try {
+            const verified = await ArnimaSdk.verifierVerifyProof(item.proofRequest, item.proof, item.schemas,
+              item.credentialDefs, item.revRegDefs ?? '{}', item.revRegs ?? '{}');
+            results.push({ verified });
+          } catch (error) {
+            results.push({ error: error.message });
+          }
+        }
+        return results;
+      }
+      return await ArnimaSdk.verifierVerifyProofs(proofs);
+    } catch (error) {
+      console.log('Presentation - Verify proofs error = ', error);
+      throw error;
+    }
+  }
+
   public async generateSchemaJson(
     credentialObjects: any[],
     poolName: string,
@@ -594,6 +629,8 @@ class PresentationService {
   };
 
   public async getRequestedCredentialsForProofRequest(
+    configJson: WalletConfig,
+    credentialsJson: WalletCredentials,
     proofRequest: any,
     presentationProposal?: any,
     poolName: string,
@@ -610,6 +647,23 @@ class PresentationService {
       };
       let revRegIdMatcher: string = '';
       let revRegIdJsonMatcher: Object = {};
+      // On Android all ledger material is resolved natively in one call after matching.
+      const resolveNatively = Platform.OS === 'android';
+      const schemaIds: Array<string> = [];
+      const credDefIds: Array<string> = [];
+      const revocations: Array<Object> = [];
+      const pendingTimestamps: Array<{ section: string; key: string; revocationKey: string }> = [];
+      const credentialsByReferent = resolveNatively
+        ? JSON.parse(
+          await ArnimaSdk.getCredentialsForProofReq(
+            JSON.stringify(configJson),
+            JSON.stringify(credentialsJson),
+            JSON.stringify(proofRequest),
+            '{}',
+            256,
+          ),
+        )
+        : undefined;
 
       let isNeedToCreateMasterRevocObj = false;
 
@@ -638,10 +692,9 @@ class PresentationService {
           }
         }
         let credentialMatch: Credential | null = null;
-        const credentials = await this.getCredentialsForProofRequest(
-          proofRequest,
-          key,
-        );
+        const credentials = credentialsByReferent
+          ? credentialsByReferent[key] ?? []
+          : await this.getCredentialsForProofRequest(configJson, credentialsJson, proofRequest, key);
         if (credentials.length === 0) {
           console.log(
             'Could not automatically construct requested credentials for proof request 00',
@@ -693,7 +746,14 @@ class PresentationService {
           throw JSON.stringify(errorObject);
         }
 
-        if (value.restrictions) {
+        if (value.restrictions && resolveNatively) {
+          this.collectProofMaterial(credentialMatch.cred_info, fromTime, toTime, 'requested_attributes', key,
+            schemaIds, credDefIds, revocations, pendingTimestamps);
+          requestedCredentials.requested_attributes[key] = {
+            cred_id: credentialMatch.cred_info.referent,
+            revealed: revealAttributes,
+          };
+        } else if (value.restrictions) {
           let timestampObj: {
             timestamp?: number;
           } = {};
@@ -754,10 +814,9 @@ class PresentationService {
           }
         }
 
-        const credentials = await this.getCredentialsForProofRequest(
-          proofRequest,
-          key,
-        );
+        const credentials = credentialsByReferent
+          ? credentialsByReferent[key] ?? []
+          : await this.getCredentialsForProofRequest(configJson, credentialsJson, proofRequest, key);
         let credMatch: Credential | null = null;
         if (credentials.length === 0) {
           const errorObject = {
@@ -796,7 +855,13 @@ class PresentationService {
           throw JSON.stringify(errorObject);
         }
 
-        if (value.restrictions) {
+        if (value.restrictions && resolveNatively) {
+          this.collectProofMaterial(credMatch.cred_info, fromTime, toTime, 'requested_predicates', key,
+            schemaIds, credDefIds, revocations, pendingTimestamps);
+          requestedCredentials.requested_predicates[key] = {
+            cred_id: credMatch.cred_info.referent,
+          };
+        } else if (value.restrictions) {
           let timestampObj: {
             timestamp?: number;
           } = {};
@@ -838,19 +903,70 @@ class PresentationService {
           requestedCredentials.self_attested_attributes[key] = nameValue;
         }
       }
+      if (resolveNatively) {
+        const material = JSON.parse(
+          await ArnimaSdk.resolveProofMaterial(
+            poolName,
+            poolConfig,
+            publicDid,
+            JSON.stringify({ schemaIds, credDefIds, revocations }),
+          ),
+        );
+        for (const { section, key, revocationKey } of pendingTimestamps) {
+          const timestamp = material.timestamps[revocationKey];
+          if (timestamp !== undefined) {
+            requestedCredentials[section][key].timestamp = timestamp;
+          }
+        }
+        return [requestedCredentials, material.revStates, material.schemas, material.credentialDefs];
+      }
       return [requestedCredentials, revocStates];
     } catch (err) {
       throw err;
     }
   }
 
+  private collectProofMaterial(
+    credInfo: any,
+    fromTime: any,
+    toTime: any,
+    section: string,
+    key: string,
+    schemaIds: Array<string>,
+    credDefIds: Array<string>,
+    revocations: Array<Object>,
+    pendingTimestamps: Array<{ section: string; key: string; revocationKey: string }>,
+  ) {
+    schemaIds.push(credInfo.schema_id);
+    credDefIds.push(credInfo.cred_def_id);
+    // Only referents with a non-revocation interval get a revocation state and a timestamp.
+    if (credInfo.rev_reg_id === null || !fromTime || !toTime) {
+      return;
+    }
+    revocations.push({
+      revRegId: credInfo.rev_reg_id,
+      credRevId: credInfo.cred_rev_id,
+      from: Number(fromTime),
+      to: Number(toTime),
+    });
+    pendingTimestamps.push({
+      section,
+      key,
+      revocationKey: `${credInfo.rev_reg_id}|${credInfo.cred_rev_id}|${Number(toTime)}`,
+    });
+  }
+
   private async getCredentialsForProofRequest(
+    configJson: WalletConfig,
+    credentialsJson: WalletCredentials,
     proofRequest,
     attributeReferent,
     start = 0,
     limit = 256,
   ): Promise<any[]> {
     const searchHandle = await ArnimaSdk.proverSearchCredentialsForProofReq(
+      JSON.stringify(configJson),
+      JSON.stringify(credentialsJson),
       JSON.stringify(proofRequest),
     );
 
@@ -4,11 +4,12 @@
 */
 
 import { Connection } from "../protocols/connection/ConnectionInterface";
+import { DeviceEventEmitter, Platform } from "react-native";
 import { EventInterface } from "../agent/EventInterface";
 import { EventRegister } from 'react-native-event-listeners';
+import { InboundMessageEvent, Record } from "../wallet/WalletInterface";
 import { MessageType } from "../utils/MessageType";
-import { Record } from "../wallet/WalletInterface";
-import { RecordType, getServiceEndpoint, unpackMessage } from "../utils/Helpers";
+import { RecordType, getServiceEndpoint, unpackMessages } from "../utils/Helpers";
 import BasicMessageService from "../protocols/basicMessage/BasicMessageService";
 import ConnectionService from "../protocols/connection/ConnectionService";
 import CredentialService from "../protocols/credential/CredentialService";
@@ -23,6 +24,12 @@ class InboundMessageHandler {
   isProcess: boolean = false;
   socket: any
   wallet: any = DatabaseServices.getWallet();
+  // Messages the native ingestion stage already unpacked, by record id, until they are processed.
+  unpackedMessages: { [id: string]: { message?: any, error?: any } } = {};
+
+  inboundMessageSubscription = Platform.OS === 'android' ? DeviceEventEmitter.addListener('inboundMessage', (event: InboundMessageEvent) => {
+    this.unpackedMessages[event.id] = event.error !== undefined ? { error: event.error } : { message: JSON.parse(event.message) };
+  }) : undefined;
 
   initializeSocket = async () => {
     // TODO :Refactor the get wallet condition
@@ -55,8 +62,18 @@ class InboundMessageHandler {
   socketMessageListener = async () => {
     this.socket.on("message", async (msg) => {
       let inboxId: string = '';
-      if (msg.length > 0) {
-        for await (let message of msg) {
+      if (msg.length > 0 && Platform.OS === 'android') {
+        for (let message of msg) {
+          inboxId = inboxId + message.id + ","
+        }
+        const summary = await WalletStorageService.ingestInboundMessages(JSON.parse(this.wallet.walletConfig), JSON.parse(this.wallet.walletCredentials), msg);
+        if (summary.failed.length > 0) {
+          console.log('InboundMessageHandler - Ingest inbound messages failed = ', summary.failed);
+        }
+        await this.sendAcknowledgementWithMessageId(msg.length, inboxId);
+      } else if (msg.length > 0) {
+        const ssiMessageRecords = [];
+        for (let message of msg) {
           inboxId = inboxId + message.id + ","
 
           const ssiMessageTags = {
@@ -65,17 +82,15 @@ class InboundMessageHandler {
             isProcessed: JSON.stringify(false),
             message: typeof message.message == 'string' ? message.message : JSON.stringify(message.message)
           }
-          const walletRecords = await WalletStorageService.getWalletRecordsFromQuery(JSON.parse(this.wallet.walletConfig), JSON.parse(this.wallet.walletCredentials), RecordType.SSIMessage, JSON.stringify({ 'messageId': message.id + '' }));
-          if (walletRecords.length === 0) {
-            await WalletStorageService.addWalletRecord(
-              JSON.parse(this.wallet.walletConfig), JSON.parse(this.wallet.walletCredentials),
-              RecordType.SSIMessage,
-              message.id + '',
-              typeof message.message == 'string' ? message.message : JSON.stringify(message.message),
-              JSON.stringify(ssiMessageTags)
-            );
-          }
+          ssiMessageRecords.push({
+            type: RecordType.SSIMessage,
+            id: message.id + '',
+            value: typeof message.message == 'string' ? message.message : JSON.stringify(message.message),
+            tags: JSON.stringify(ssiMessageTags)
+          });
         }
+        // Messages the mediator redelivers are already stored under the same id, so a failed add is a duplicate.
+        await WalletStorageService.addWalletRecords(JSON.parse(this.wallet.walletConfig), JSON.parse(this.wallet.walletCredentials), ssiMessageRecords);
         await this.sendAcknowledgementWithMessageId(msg.length, inboxId);
       }
       return msg;
@@ -110,11 +125,25 @@ class InboundMessageHandler {
       if (unprocessedMessages === null) {
         unprocessedMessages = []
       }
+      const autoProcessedMessages = unprocessedMessages.filter(record => record.tags.autoProcessed === 'true');
+      const unpackResultsById = {};
+      autoProcessedMessages.forEach(record => {
+        if (this.unpackedMessages[record.id] !== undefined) {
+          unpackResultsById[record.id] = this.unpackedMessages[record.id];
+          delete this.unpackedMessages[record.id];
+        }
+      });
+      const packedMessages = autoProcessedMessages.filter(record => unpackResultsById[record.id] === undefined);
+      const unpackResults = await unpackMessages(JSON.parse(this.wallet.walletConfig), JSON.parse(this.wallet.walletCredentials), packedMessages.map(record => JSON.parse(record.value).msg));
+      packedMessages.forEach((record, index) => { unpackResultsById[record.id] = unpackResults[index] });
       for (let i = 0; i < unprocessedMessages.length; i++) {
         this.isProcess = true;
         if (unprocessedMessages[i].tags.autoProcessed === 'true') {
-          const messageRecord = JSON.parse(unprocessedMessages[i].value);
-          const unpackMessageResponse = await unpackMessage(JSON.parse(this.wallet.walletConfig), JSON.parse(this.wallet.walletCredentials), messageRecord.msg);
+          const unpackResult = unpackResultsById[unprocessedMessages[i].id];
+          if (unpackResult.error !== undefined) {
+            throw unpackResult.error;
+          }
+          const unpackMessageResponse = unpackResult.message;
           const message = JSON.parse(unpackMessageResponse.message);
 
           const query = {
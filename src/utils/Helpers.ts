@@ -51,11 +51,10 @@ export async function verify(configJson: WalletConfig, credentialsJson: WalletCr
 
     let valid;
     if (Platform.OS == 'android') {
-      valid = await ArnimaSdk.cryptoVerify(JSON.stringify(configJson),
-        JSON.stringify(credentialsJson),
-        signerVerkey,
-        Array.from(signedData),
-        Array.from(signature));
+      valid = await ArnimaSdk.cryptoVerifyEncoded(signerVerkey,
+        data.sig_data,
+        'base64',
+        data.signature);
     }
     else {
       valid = await ArnimaSdk.cryptoVerify(JSON.stringify(configJson),
@@ -96,10 +95,12 @@ export async function sign(configJson: WalletConfig, credentialsJson: WalletCred
         signerVerkey,
         JSON.stringify(data));
     } else {
-      signatureBuffer = await ArnimaSdk.cryptoSign(JSON.stringify(configJson),
+      const signature: string = await ArnimaSdk.cryptoSignEncoded(JSON.stringify(configJson),
         JSON.stringify(credentialsJson),
         signerVerkey,
-        Array.from(dataBuffer));
+        dataBuffer.toString('base64'),
+        'base64');
+      signatureBuffer = Buffer.from(signature, 'base64');
     }
 
     const signedMessage = {
@@ -121,53 +122,81 @@ export async function sign(configJson: WalletConfig, credentialsJson: WalletCred
   }
 }
 
+export async function signBatch(configJson: WalletConfig, credentialsJson: WalletCredentials, items: Array<{ signerVk: string, data: Buffer }>) {
+  try {
+    const results = await ArnimaSdk.cryptoSignBatch(JSON.stringify(configJson),
+      JSON.stringify(credentialsJson),
+      items.map(item => ({ signerVk: item.signerVk, message: item.data.toString('base64') })),
+      'base64');
+    return results.map(result => result.error !== undefined ? { error: result.error } : { signature: Buffer.from(result.signature, 'base64') });
+  } catch (error) {
+    console.log("sign batch = ", error);
+    throw error;
+  }
+}
+
+export async function verifyBatch(items: Array<{ signerVk: string, data: Buffer, signature: Buffer }>) {
+  try {
+    return await ArnimaSdk.cryptoVerifyBatch(
+      items.map(item => ({ signerVk: item.signerVk, message: item.data.toString('base64'), signature: item.signature.toString('base64') })),
+      'base64');
+  } catch (error) {
+    console.log("verify batch = ", error);
+    throw error;
+  }
+}
+
 export async function unpackMessage(configJson: WalletConfig, credentialsJson: WalletCredentials, inboundMessage: InboundMessage) {
   try {
-    const buf = Buffer.from(JSON.stringify(inboundMessage));
-    let unpackedBufferMessage;
     if (Platform.OS === 'ios') {
-      unpackedBufferMessage = await ArnimaSdk.unpackMessage(JSON.stringify(configJson), JSON.stringify(credentialsJson), JSON.stringify(inboundMessage))
+      const unpackedBufferMessage = await ArnimaSdk.unpackMessage(JSON.stringify(configJson), JSON.stringify(credentialsJson), JSON.stringify(inboundMessage))
+      const unpackedMessage = Buffer.from(unpackedBufferMessage);
+      return JSON.parse(unpackedMessage.toString('utf-8'));
     }
-    else {
-      unpackedBufferMessage = await ArnimaSdk.unpackMessage(JSON.stringify(configJson), JSON.stringify(credentialsJson), Array.from(buf))
-    }
-    const unpackedMessage = Buffer.from(unpackedBufferMessage);
-    return JSON.parse(unpackedMessage.toString('utf-8'));
+    const unpackedMessage: string = await ArnimaSdk.unpackMessageEncoded(JSON.stringify(configJson), JSON.stringify(credentialsJson), JSON.stringify(inboundMessage), 'utf8');
+    return JSON.parse(unpackedMessage);
   } catch (error) {
     console.log("unpackMessage = ", error);
     throw error;
   }
 }
 
-export async function packMessage(configJson: WalletConfig, credentialsJson: WalletCredentials, outboundMessage: OutboundMessage) {
+export async function unpackMessages(configJson: WalletConfig, credentialsJson: WalletCredentials, inboundMessages: Array<InboundMessage>) {
   try {
-    const { routingKeys, recipientKeys, senderVk, payload } = outboundMessage;
-    const buf = Buffer.from(JSON.stringify(payload));
-    let packedBufferMessage;
     if (Platform.OS === 'ios') {
-      packedBufferMessage = await ArnimaSdk.packMessage(JSON.stringify(configJson), JSON.stringify(credentialsJson), JSON.stringify(payload), recipientKeys, senderVk)
+      const results = [];
+      for (const inboundMessage of inboundMessages) {
+        try {
+          results.push({ message: await unpackMessage(configJson, credentialsJson, inboundMessage) });
+        } catch (error) {
+          results.push({ error });
+        }
+      }
+      return results;
     }
-    else {
-      packedBufferMessage = await ArnimaSdk.packMessage(JSON.stringify(configJson), JSON.stringify(credentialsJson), Array.from(buf), recipientKeys, senderVk)
+    const unpackedMessages = await ArnimaSdk.unpackMessages(JSON.stringify(configJson), JSON.stringify(credentialsJson), inboundMessages.map(inboundMessage => JSON.stringify(inboundMessage)));
+    return unpackedMessages.map(item => item.error !== undefined ? { error: item.error } : { message: JSON.parse(item.message) });
+  } catch (error) {
+    console.log("unpackMessages = ", error);
+    throw error;
+  }
+}
+
+export async function packMessage(configJson: WalletConfig, credentialsJson: WalletCredentials, outboundMessage: OutboundMessage) {
+  try {
+    const { routingKeys, recipientKeys, senderVk, payload } = outboundMessage;
+    if (Platform.OS !== 'ios') {
+      return JSON.parse(await ArnimaSdk.packMessageWithRouting(JSON.stringify(configJson), JSON.stringify(credentialsJson), JSON.stringify(payload), recipientKeys, routingKeys || [], senderVk));
     }
-    const packedMessage = Buffer.from(packedBufferMessage);
-    const outboundPackedMessage = JSON.parse(packedMessage.toString('utf-8'));
 
-    let message = outboundPackedMessage;
+    const packedBufferMessage = await ArnimaSdk.packMessage(JSON.stringify(configJson), JSON.stringify(credentialsJson), JSON.stringify(payload), recipientKeys, senderVk)
+    let message = JSON.parse(Buffer.from(packedBufferMessage).toString('utf-8'));
     if (routingKeys && routingKeys.length > 0) {
       for (const routingKey of routingKeys) {
         const [recipientKey] = recipientKeys;
         const forwardMessage = createForwardMessage(recipientKey, message);
-        const forwardMessageBuffer = Buffer.from(JSON.stringify(forwardMessage));
-        let forwardBufferMessage;
-        if (Platform.OS === 'ios') {
-          forwardBufferMessage = await ArnimaSdk.packMessage(JSON.stringify(configJson), JSON.stringify(credentialsJson), JSON.stringify(forwardMessage), [routingKey], senderVk)
-        }
-        else {
-          forwardBufferMessage = await ArnimaSdk.packMessage(JSON.stringify(configJson), JSON.stringify(credentialsJson), Array.from(forwardMessageBuffer), [routingKey], senderVk)
-        }
-        const forwardPackedMessage = Buffer.from(forwardBufferMessage);
-        message = JSON.parse(forwardPackedMessage.toString('utf-8'));
+        const forwardBufferMessage = await ArnimaSdk.packMessage(JSON.stringify(configJson), JSON.stringify(credentialsJson), JSON.stringify(forwardMessage), [routingKey], senderVk)
+        message = JSON.parse(Buffer.from(forwardBufferMessage).toString('utf-8'));
       }
     }
     return message;
@@ -249,6 +278,14 @@ export async function createOutboundMessage(connection: Connection, payload: Obj
 
 export async function sendOutboundMessage(configJson: WalletConfig, credentialsJson: WalletCredentials, connection: Connection, message: Object, invitation?: Message, oobService?: object) {
   const outboundMessage = await createOutboundMessage(connection, message, invitation, oobService);
+  if (Platform.OS === 'android') {
+    // Packed and posted natively, so the packed message does not come back over the bridge.
+    // Like the fetch path below it resolves on any HTTP status and rejects when the agent
+    // cannot be reached; a message is only resent when it never got to the agent.
+    const { endpoint, payload, recipientKeys, routingKeys, senderVk } = outboundMessage;
+    await ArnimaSdk.packAndSend(JSON.stringify(configJson), JSON.stringify(credentialsJson), endpoint, recipientKeys, routingKeys || [], senderVk, JSON.stringify(payload));
+    return;
+  }
   const outboundPackMessage = await packMessage(configJson, credentialsJson, outboundMessage);
   await OutboundAgentMessage(outboundMessage.endpoint, 'POST', JSON.stringify(outboundPackMessage));
 }
@@ -44,4 +44,67 @@ export interface Record {
   id: string,
   value: string,
   tags: Object
-}
\ No newline at end of file
+}
+
+export interface WalletRecordOperation {
+  type: string,
+  id: string,
+  value?: string,
+  tags?: string
+}
+
+export interface WalletRecordOperationResult {
+  id: string,
+  success: boolean,
+  error?: string
+}
+
+export interface WalletImportOptions {
+  pageSize?: number,
+  outputPath?: string
+}
+
+export interface WalletImportSummary {
+  importId: string,
+  outputPath?: string,
+  total: number,
+  types: { [type: string]: { extracted: number, deleted: number, deleteFailures: number } }
+}
+
+export interface WalletImportProgress {
+  importId: string,
+  type: string,
+  extracted: number,
+  deleted: number,
+  totalCount: number
+}
+
+export interface InboundMessageIngestSummary {
+  received: number,
+  accepted: number,
+  duplicates: number,
+  failed: Array<{ id: string, code: string, error: string }>
+}
+
+export interface InboundMessageEvent {
+  id: string,
+  message?: string,
+  error?: string
+}
+
+export interface WalletExportOptions {
+  compress?: boolean,
+  chunkBytes?: number,
+  compressionLevel?: number
+}
+
+export interface WalletExportProgress {
+  jobId: string,
+  state: 'running' | 'completed' | 'failed' | 'cancelled',
+  phase?: 'exporting' | 'compressing',
+  bytes?: number,
+  totalBytes?: number,
+  path?: string,
+  error?: string,
+  code?: string
+}
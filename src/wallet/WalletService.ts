@@ -7,9 +7,14 @@ import {
   DidJson,
   WalletConfig,
   WalletCredentials,
+  WalletExportOptions,
+  WalletExportProgress,
+  WalletImportOptions,
+  WalletImportProgress,
+  WalletImportSummary,
   WalletRecord,
 } from './WalletInterface';
-import {NativeModules} from 'react-native';
+import {DeviceEventEmitter, NativeModules, Platform} from 'react-native';
 import {RecordType} from '../utils/Helpers';
 import DatabaseServices from '../storage';
 import WalletStorageService from './WalletStorageService';
@@ -123,6 +128,260 @@ class WalletService {
     }
   }
 
+  /**
+   * Rekey the wallet to a random raw key kept under the Android Keystore, so later opens skip the
+   * passphrase key derivation. A copy of the key protected by the passphrase is kept as well, so
+   * the wallet still opens with its passphrase if the Keystore entry is lost. Not available on
+   * iOS, where this resolves false.
+   *
+   * @param {WalletConfig} config
+   * @param {WalletCredentials} credentials
+   * @return {*}  {Promise<boolean>}
+   * @memberof WalletService
+   */
+  async enableFastUnlock(config: WalletConfig, credentials: WalletCredentials): Promise<boolean> {
+    try {
+      if (Platform.OS !== 'android') {
+        return false;
+      }
+      return await ArnimaSdk.enableFastUnlock(JSON.stringify(config), JSON.stringify(credentials));
+    } catch (error) {
+      console.log('WalletService - Enable fast unlock error = ', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Rekey a fast unlock wallet back to its passphrase and drop the cached key
+   *
+   * @param {WalletConfig} config
+   * @param {WalletCredentials} credentials
+   * @return {*}  {Promise<boolean>}
+   * @memberof WalletService
+   */
+  async disableFastUnlock(config: WalletConfig, credentials: WalletCredentials): Promise<boolean> {
+    try {
+      if (Platform.OS !== 'android') {
+        return false;
+      }
+      return await ArnimaSdk.disableFastUnlock(JSON.stringify(config), JSON.stringify(credentials));
+    } catch (error) {
+      console.log('WalletService - Disable fast unlock error = ', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Close one wallet without touching the others kept open by the native wallet registry
+   *
+   * @param {WalletConfig} config
+   * @return {*}  {Promise<null>}
+   * @memberof WalletService
+   */
+  async closeWallet(config: WalletConfig): Promise<null> {
+    try {
+      return await ArnimaSdk.closeWalletById(config.id);
+    } catch (error) {
+      console.log('WalletService - Close wallet error = ', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Set how many wallets stay open at once; opening one more closes the least recently used
+   *
+   * @param {number} maxOpenWallets
+   * @return {*}  {Promise<null>}
+   * @memberof WalletService
+   */
+  async setMaxOpenWallets(maxOpenWallets: number): Promise<null> {
+    try {
+      return await ArnimaSdk.setMaxOpenWallets(maxOpenWallets);
+    } catch (error) {
+      console.log('WalletService - Set max open wallets error = ', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Import a wallet backup and move the records of the given types out of it page by page.
+   * Each page is passed to onRecords as it is extracted (or written to options.outputPath as
+   * one JSON array when given), and the extracted records are deleted from the wallet.
+   *
+   * @param {WalletConfig} config
+   * @param {WalletCredentials} credentials
+   * @param {Object} importConfig
+   * @param {string[]} types
+   * @param {(type: string, records: Object[]) => void} [onRecords]
+   * @param {WalletImportOptions} [options={}]
+   * @param {(progress: WalletImportProgress) => void} [onProgress]
+   * @return {*}  {Promise<WalletImportSummary>}
+   * @memberof WalletService
+   */
+  async importWalletStreamed(
+    config: WalletConfig,
+    credentials: WalletCredentials,
+    importConfig: Object,
+    types: string[],
+    onRecords?: (type: string, records: Object[]) => void,
+    options: WalletImportOptions = {},
+    onProgress?: (progress: WalletImportProgress) => void,
+  ): Promise<WalletImportSummary> {
+    const importId = `${config.id}-${Date.now()}`;
+    if (Platform.OS !== 'android') {
+      const records: any[] = JSON.parse(
+        await ArnimaSdk.importWallet(
+          JSON.stringify(config),
+          JSON.stringify(credentials),
+          JSON.stringify(importConfig),
+          JSON.stringify(types.map(type => ({type}))),
+        ),
+      );
+      const summary: WalletImportSummary = {importId, total: records.length, types: {}};
+      types.forEach(type => {
+        const typeRecords = records.filter(record => record.type === type);
+        if (onRecords && typeRecords.length > 0) {
+          onRecords(type, typeRecords);
+        }
+        summary.types[type] = {extracted: typeRecords.length, deleted: typeRecords.length, deleteFailures: 0};
+      });
+      return summary;
+    }
+
+    const recordsSubscription = DeviceEventEmitter.addListener('walletImportRecords', event => {
+      if (event.importId === importId && onRecords) {
+        onRecords(event.type, JSON.parse(event.records));
+      }
+    });
+    const progressSubscription = DeviceEventEmitter.addListener('walletImportProgress', event => {
+      if (event.importId === importId && onProgress) {
+        onProgress(event);
+      }
+    });
+    try {
+      return JSON.parse(
+        await ArnimaSdk.importWalletStreamed(
+          JSON.stringify(config),
+          JSON.stringify(credentials),
+          JSON.stringify(importConfig),
+          JSON.stringify(types),
+          JSON.stringify({...options, importId}),
+        ),
+      );
+    } catch (error) {
+      console.log('WalletService - Import wallet streamed error = ', error);
+      throw error;
+    } finally {
+      recordsSubscription.remove();
+      progressSubscription.remove();
+    }
+  }
+
+  /**
+   * Start a wallet export in the background. Resolves with the job id once the job is queued;
+   * completion resolves with the export path (the archive manifest when compressed) or rejects
+   * when the job fails or is cancelled.
+   *
+   * @param {WalletConfig} config
+   * @param {WalletCredentials} credentials
+   * @param {Object} exportConfig
+   * @param {WalletExportOptions} [options={}]
+   * @param {(progress: WalletExportProgress) => void} [onProgress]
+   * @return {*}  {Promise<{jobId: string, completion: Promise<string>}>}
+   * @memberof WalletService
+   */
+  async startWalletExport(
+    config: WalletConfig,
+    credentials: WalletCredentials,
+    exportConfig: Object,
+    options: WalletExportOptions = {},
+    onProgress?: (progress: WalletExportProgress) => void,
+  ): Promise<{jobId: string, completion: Promise<string>}> {
+    if (Platform.OS !== 'android') {
+      const completion = ArnimaSdk.exportWallet(
+        JSON.stringify(config),
+        JSON.stringify(credentials),
+        JSON.stringify(exportConfig),
+      ).then(() => (exportConfig as any).path);
+      return {jobId: '', completion};
+    }
+
+    // Events can arrive before the job id does, so they are held until it is known.
+    let jobId: string | undefined;
+    const pending: WalletExportProgress[] = [];
+    let settle: (progress: WalletExportProgress) => void = () => {};
+    const completion = new Promise<string>((resolve, reject) => {
+      settle = progress => {
+        if (progress.state === 'completed') {
+          resolve(progress.path as string);
+        } else {
+          reject(progress);
+        }
+      };
+    });
+    const handle = (progress: WalletExportProgress) => {
+      if (progress.jobId !== jobId) {
+        return;
+      }
+      if (onProgress) {
+        onProgress(progress);
+      }
+      if (progress.state !== 'running') {
+        subscription.remove();
+        settle(progress);
+      }
+    };
+    const subscription = DeviceEventEmitter.addListener('walletExportProgress', (event: string) => {
+      const progress: WalletExportProgress = JSON.parse(event);
+      if (jobId === undefined) {
+        pending.push(progress);
+      } else {
+        handle(progress);
+      }
+    });
+    try {
+      jobId = await ArnimaSdk.startWalletExport(
+        JSON.stringify(config),
+        JSON.stringify(credentials),
+        JSON.stringify(exportConfig),
+        JSON.stringify(options),
+      );
+      pending.forEach(handle);
+      return {jobId: jobId as string, completion};
+    } catch (error) {
+      subscription.remove();
+      console.log('WalletService - Start wallet export error = ', error);
+      throw error;
+    }
+  }
+
+  async cancelWalletExport(jobId: string): Promise<boolean> {
+    try {
+      return await ArnimaSdk.cancelWalletExport(jobId);
+    } catch (error) {
+      console.log('WalletService - Cancel wallet export error = ', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Verify a compressed export against its manifest and decompress it into outputPath,
+   * ready to be passed to importWallet
+   *
+   * @param {string} archivePath
+   * @param {string} outputPath
+   * @return {*}  {Promise<string>}
+   * @memberof WalletService
+   */
+  async restoreWalletExportArchive(archivePath: string, outputPath: string): Promise<string> {
+    try {
+      return await ArnimaSdk.restoreWalletExportArchive(archivePath, outputPath);
+    } catch (error) {
+      console.log('WalletService - Restore wallet export archive error = ', error);
+      throw error;
+    }
+  }
+
   async deleteWallet(): Promise<boolean> {
     try {
       const sdkDB: any = DatabaseServices.getWallet();
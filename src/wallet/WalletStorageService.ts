@@ -3,12 +3,15 @@
   SPDX-License-Identifier: Apache-2.0
 */
 
-import { NativeModules } from "react-native";
-import { Record, WalletConfig, WalletCredentials, WalletStorageRecord } from "./WalletInterface";
+import { NativeModules, Platform } from "react-native";
+import { InboundMessageIngestSummary, Record, WalletConfig, WalletCredentials, WalletRecordOperation, WalletRecordOperationResult, WalletStorageRecord } from "./WalletInterface";
 
 const { ArnimaSdk } = NativeModules;
 class WalletStorageService {
 
+  private iosSearches = new Map<number, { records: Array<Record>, totalCount: number | null }>();
+  private nextIosSearch = 0;
+
   async addWalletRecord(config: WalletConfig, credentials: WalletCredentials, type: string, id: string,
     value: string, tags: string) {
 
@@ -44,6 +47,177 @@ class WalletStorageService {
     }
   }
 
+  async upsertWalletRecord(config: WalletConfig, credentials: WalletCredentials, type: string, id: string,
+    value: string, tags: string): Promise<boolean> {
+
+    try {
+      if (Platform.OS === 'ios') {
+        try {
+          await this.updateWalletRecord(config, credentials, type, id, value, tags);
+          return false;
+        } catch (error) {
+          await this.addWalletRecord(config, credentials, type, id, value, tags);
+          return true;
+        }
+      }
+      return await ArnimaSdk.upsertWalletRecord(JSON.stringify(config), JSON.stringify(credentials),
+        type, id, value, tags);
+    } catch (error) {
+      console.log('WalletStorageService - ' + type + ' - Upsert wallet record = ', error);
+      throw error;
+    }
+  }
+
+  async addWalletRecordIfAbsent(config: WalletConfig, credentials: WalletCredentials, type: string, id: string,
+    value: string, tags: string): Promise<boolean> {
+
+    try {
+      if (Platform.OS === 'ios') {
+        try {
+          await this.addWalletRecord(config, credentials, type, id, value, tags);
+          return true;
+        } catch (error) {
+          return false;
+        }
+      }
+      return await ArnimaSdk.addWalletRecordIfAbsent(JSON.stringify(config), JSON.stringify(credentials),
+        type, id, value, tags);
+    } catch (error) {
+      console.log('WalletStorageService - ' + type + ' - Add wallet record if absent = ', error);
+      throw error;
+    }
+  }
+
+  async addWalletRecords(config: WalletConfig, credentials: WalletCredentials, records: Array<WalletRecordOperation>): Promise<Array<WalletRecordOperationResult>> {
+    try {
+      if (Platform.OS === 'ios') {
+        return await this.runSequentially(records, record => this.addWalletRecord(config, credentials, record.type, record.id, record.value, record.tags));
+      }
+      return await ArnimaSdk.addWalletRecords(JSON.stringify(config), JSON.stringify(credentials), records);
+    } catch (error) {
+      console.log('WalletStorageService - Add wallet records = ', error);
+      throw error;
+    }
+  }
+
+  async updateWalletRecords(config: WalletConfig, credentials: WalletCredentials, records: Array<WalletRecordOperation>): Promise<Array<WalletRecordOperationResult>> {
+    try {
+      if (Platform.OS === 'ios') {
+        return await this.runSequentially(records, record => this.updateWalletRecord(config, credentials, record.type, record.id, record.value, record.tags));
+      }
+      return await ArnimaSdk.updateWalletRecords(JSON.stringify(config), JSON.stringify(credentials), records);
+    } catch (error) {
+      console.log('WalletStorageService - Update wallet records = ', error);
+      throw error;
+    }
+  }
+
+  async deleteWalletRecords(config: WalletConfig, credentials: WalletCredentials, records: Array<WalletRecordOperation>): Promise<Array<WalletRecordOperationResult>> {
+    try {
+      if (Platform.OS === 'ios') {
+        return await this.runSequentially(records, record => this.deleteWalletRecord(config, credentials, record.type, record.id));
+      }
+      return await ArnimaSdk.deleteWalletRecords(JSON.stringify(config), JSON.stringify(credentials), records);
+    } catch (error) {
+      console.log('WalletStorageService - Delete wallet records = ', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Hands a batch of mediator messages to the native ingestion stage (Android only), which
+   * drops messages that are already stored, stores the rest as SSIMessage records and unpacks
+   * them, emitting an 'inboundMessage' event per stored message.
+   *
+   * @param {WalletConfig} config
+   * @param {WalletCredentials} credentials
+   * @param {Array<{ id: any, message: any }>} messages
+   * @return {*}  {Promise<InboundMessageIngestSummary>}
+   * @memberof WalletStorageService
+   */
+  async ingestInboundMessages(config: WalletConfig, credentials: WalletCredentials, messages: Array<{ id: any, message: any }>): Promise<InboundMessageIngestSummary> {
+    try {
+      const items = messages.map(message => ({ id: message.id + '', message: message.message }));
+      return JSON.parse(await ArnimaSdk.ingestInboundMessages(JSON.stringify(config), JSON.stringify(credentials), JSON.stringify(items)));
+    } catch (error) {
+      console.log('WalletStorageService - Ingest inbound messages = ', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Opens a cursor over the records matching the query. iOS has no native cursor, so there the
+   * search reads the first 100 matches up front and the handle pages through them.
+   *
+   * @param {WalletConfig} config
+   * @param {WalletCredentials} credentials
+   * @param {string} type
+   * @param {string} query
+   * @param {boolean} [retrieveTotalCount=false]
+   * @return {*}  {Promise<number>}
+   * @memberof WalletStorageService
+   */
+  async openWalletSearch(config: WalletConfig, credentials: WalletCredentials, type: string, query: string, retrieveTotalCount: boolean = false): Promise<number> {
+    try {
+      if (Platform.OS !== 'android') {
+        const queryResponse: string = await ArnimaSdk.getWalletRecordFromQuery(JSON.stringify(config), JSON.stringify(credentials), type, query);
+        const walletRecord: WalletStorageRecord = JSON.parse(queryResponse);
+        const records = walletRecord.records === null ? [] : walletRecord.records;
+        const searchHandle = ++this.nextIosSearch;
+        this.iosSearches.set(searchHandle, { records, totalCount: retrieveTotalCount ? records.length : null });
+        return searchHandle;
+      }
+      return await ArnimaSdk.openWalletSearch(JSON.stringify(config), JSON.stringify(credentials), type, query, retrieveTotalCount);
+    } catch (error) {
+      console.log('WalletStorageService - ' + type + ' - Open wallet search = ', error);
+      throw error;
+    }
+  }
+
+  async fetchNextWalletRecords(searchHandle: number, count: number): Promise<WalletStorageRecord> {
+    try {
+      if (Platform.OS !== 'android') {
+        const search = this.iosSearches.get(searchHandle);
+        if (search === undefined) {
+          throw new Error('Wallet search ' + searchHandle + ' is closed');
+        }
+        return { totalCount: search.totalCount, records: search.records.splice(0, count) };
+      }
+      const fetchResponse: string = await ArnimaSdk.fetchNextWalletRecords(searchHandle, count);
+      const walletRecord: WalletStorageRecord = JSON.parse(fetchResponse);
+      return { totalCount: walletRecord.totalCount, records: walletRecord.records === null ? [] : walletRecord.records };
+    } catch (error) {
+      console.log('WalletStorageService - Fetch next wallet records = ', error);
+      throw error;
+    }
+  }
+
+  async closeWalletSearch(searchHandle: number) {
+    try {
+      if (Platform.OS !== 'android') {
+        this.iosSearches.delete(searchHandle);
+        return null;
+      }
+      return await ArnimaSdk.closeWalletSearch(searchHandle);
+    } catch (error) {
+      console.log('WalletStorageService - Close wallet search = ', error);
+      throw error;
+    }
+  }
+
+  private async runSequentially(records: Array<WalletRecordOperation>, operation: (record: WalletRecordOperation) => Promise<any>): Promise<Array<WalletRecordOperationResult>> {
+    const results: Array<WalletRecordOperationResult> = [];
+    for (const record of records) {
+      try {
+        await operation(record);
+        results.push({ id: record.id, success: true });
+      } catch (error) {
+        results.push({ id: record.id, success: false, error: error.message });
+      }
+    }
+    return results;
+  }
+
   async getWalletRecordFromQuery(config: WalletConfig, credentials: WalletCredentials, type: string, query: string) {
 
     try {